@@ -67,6 +67,16 @@ public final class ElementsProperties {
     public static final String FIELDS_DECIMAL_FORMAT =
             "elements.fields.format.decimal";
 
+    public static final String OGNL_EXPRESSION_CACHE_SIZE =
+            "ognl.expression.cache.size";
+    public static final String OGNL_COMPILE =
+            "ognl.compile";
+    public static final String OGNL_COMPILE_THRESHOLD =
+            "ognl.compile.threshold";
+
+    public static final String REFLECTION_GENERATE_ACCESSORS =
+            "reflection.accessors.generate";
+
     //**************************************************************************
     // Static fields, singleton initialization and retrieval
     //**************************************************************************
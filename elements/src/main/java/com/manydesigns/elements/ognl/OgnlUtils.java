@@ -20,13 +20,20 @@
 
 package com.manydesigns.elements.ognl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.manydesigns.elements.ElementsProperties;
 import com.manydesigns.elements.ElementsThreadLocals;
 import ognl.*;
+import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -41,23 +48,109 @@ public class OgnlUtils {
     public final static Logger logger =
             LoggerFactory.getLogger(OgnlUtils.class);
 
+    //**************************************************************************
+    // Expression caches
+    //**************************************************************************
+
+    /**
+     * Parsed expressions, keyed by expression string.
+     */
+    protected static final Cache<String, Object> parsedExpressions;
+
+    /**
+     * Usage counts and compiled forms of the expressions, keyed by root class, then by expression string. Root classes
+     * are held weakly, so that reloaded (e.g. Groovy) classes can be unloaded; since compiled expressions reference
+     * the root class, the per-class caches are held softly, otherwise they would keep it reachable.
+     */
+    protected static final LoadingCache<Class<?>, Cache<String, ExpressionUsage>> compiledExpressions;
+
+    protected static volatile boolean compileExpressions;
+    protected static final int compileThreshold;
+
+    static {
+        Configuration configuration = ElementsProperties.getConfiguration();
+        final int cacheSize = configuration.getInt(ElementsProperties.OGNL_EXPRESSION_CACHE_SIZE, 10000);
+        parsedExpressions = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+        compiledExpressions = CacheBuilder.newBuilder()
+                .weakKeys()
+                .softValues()
+                .build(new CacheLoader<Class<?>, Cache<String, ExpressionUsage>>() {
+                    @Override
+                    public Cache<String, ExpressionUsage> load(Class<?> key) {
+                        return CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+                    }
+                });
+        compileExpressions = configuration.getBoolean(ElementsProperties.OGNL_COMPILE, false);
+        compileThreshold = Math.max(1, configuration.getInt(ElementsProperties.OGNL_COMPILE_THRESHOLD, 100));
+    }
+
+    /**
+     * The number of times an expression has been evaluated against a root class and, once it's been evaluated
+     * {@link #compileThreshold} times, its compiled form.
+     */
+    protected static class ExpressionUsage {
+        protected final AtomicInteger hits = new AtomicInteger();
+        protected volatile Object compiled;
+    }
+
+    public static boolean isCompileExpressions() {
+        return compileExpressions;
+    }
+
+    /**
+     * Enables or disables the compilation of expressions evaluated with
+     * {@link #getValueQuietly(String, Map, Object)}. Only hot expressions are compiled, i.e. the ones evaluated at
+     * least ognl.compile.threshold times against the same root class.
+     */
+    public static void setCompileExpressions(boolean compileExpressions) {
+        OgnlUtils.compileExpressions = compileExpressions;
+    }
+
     public static Object getValueQuietly(String expression,
                                          Map ognlContext,
                                          Object root) {
+        if (compileExpressions && expression != null && root != null) {
+            Object compiledOgnlExpression = compileExpressionQuietly(expression, ognlContext, root);
+            if (compiledOgnlExpression != null) {
+                try {
+                    if (ognlContext == null) {
+                        return Ognl.getValue(compiledOgnlExpression, root);
+                    } else {
+                        return Ognl.getValue(compiledOgnlExpression, ognlContext, root);
+                    }
+                } catch (OgnlException e) {
+                    logger.debug("Error during evaluation of ognl expression: " + expression, e);
+                    return null;
+                } catch (RuntimeException e) {
+                    //The compiled code relies on the types seen at compile time, which might have changed
+                    logger.debug("Compiled ognl expression failed, falling back to interpretation: " + expression, e);
+                    getExpressionUsage(expression, root.getClass()).compiled = parseExpressionQuietly(expression);
+                }
+            }
+        }
         Object parsedOgnlExpression = parseExpressionQuietly(expression);
         return getValueQuietly(
                 parsedOgnlExpression, ognlContext, root);
     }
 
+    /**
+     * Parses an expression, reusing a previously parsed tree if available. The returned tree must not be modified.
+     * @param expression the expression.
+     * @return the parsed expression, or null if it's not valid.
+     */
     public static Object parseExpressionQuietly(String expression) {
         if (expression == null) {
             logger.warn("Null expression");
             return null;
         }
 
-        Object result;
+        Object result = parsedExpressions.getIfPresent(expression);
+        if (result != null) {
+            return result;
+        }
         try {
             result = Ognl.parseExpression(expression);
+            parsedExpressions.put(expression, result);
         } catch (OgnlException e) {
             result = null;
             logger.warn("Error during parsing of ognl expression: " +
@@ -66,6 +159,54 @@ public class OgnlUtils {
         return result;
     }
 
+    /**
+     * Counts an evaluation of an expression against the class of the given root object and, once the expression has
+     * been evaluated ognl.compile.threshold times, compiles it to bytecode for that class. If the expression cannot be
+     * compiled, its parsed form is used instead.
+     * @param expression the expression.
+     * @param ognlContext the context; can be null.
+     * @param root the root object.
+     * @return the compiled or parsed expression, or null if the expression is not hot yet or it's not valid.
+     */
+    public static Object compileExpressionQuietly(String expression, Map ognlContext, Object root) {
+        ExpressionUsage usage = getExpressionUsage(expression, root.getClass());
+        Object result = usage.compiled;
+        if (result != null || usage.hits.incrementAndGet() != compileThreshold) {
+            //Only the thread that reaches the threshold compiles; the others interpret until it's done
+            return result;
+        }
+        OgnlContext context;
+        if (ognlContext instanceof OgnlContext) {
+            context = (OgnlContext) ognlContext;
+        } else {
+            context = (OgnlContext) Ognl.createDefaultContext(root);
+            if (ognlContext != null) {
+                context.setValues(ognlContext);
+            }
+        }
+        try {
+            result = Ognl.compileExpression(context, root, expression);
+        } catch (Throwable e) {
+            logger.debug("Could not compile ognl expression, it will be interpreted: " + expression, e);
+            result = parseExpressionQuietly(expression);
+        }
+        usage.compiled = result;
+        return result;
+    }
+
+    protected static ExpressionUsage getExpressionUsage(String expression, Class<?> rootClass) {
+        Cache<String, ExpressionUsage> usages = compiledExpressions.getUnchecked(rootClass);
+        ExpressionUsage usage = usages.getIfPresent(expression);
+        if (usage == null) {
+            usage = new ExpressionUsage();
+            ExpressionUsage existing = usages.asMap().putIfAbsent(expression, usage);
+            if (existing != null) {
+                usage = existing;
+            }
+        }
+        return usage;
+    }
+
     public static Object getValueQuietly(Object parsedExpression,
                                          Map ognlContext, Object root) {
         if (parsedExpression == null) {
@@ -110,6 +251,8 @@ public class OgnlUtils {
     }
 
     public static void clearCache() {
+        parsedExpressions.invalidateAll();
+        compiledExpressions.invalidateAll();
         OgnlRuntime.clearCache();
         clearOGNLCache("cacheGetMethod");
         clearOGNLCache("cacheSetMethod");
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.reflection;
+
+import javassist.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates {@link GeneratedAccessor} subclasses that call the getters and setters of a class directly, instead of
+ * through reflection. Only public methods of public classes are supported; the bytecode of the class must be
+ * available as a resource from its class loader, so e.g. classes compiled in memory by Groovy are not supported.
+ * Each generated class is defined in its own class loader, a child of the class loader of the target class, so
+ * that it can be garbage collected together with it.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class AccessorGenerator {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final String PACKAGE_NAME = "com.manydesigns.elements.reflection.generated";
+
+    protected static final AtomicInteger counter = new AtomicInteger();
+
+    public static final Logger logger = LoggerFactory.getLogger(AccessorGenerator.class);
+
+    /**
+     * Generates an accessor for a class.
+     * @param beanClass the class.
+     * @param getters the getters, by index. Elements can be null; the corresponding properties are not supported
+     *                by the accessor.
+     * @param setters the setters, by index. Elements can be null.
+     * @return the accessor, or null if it cannot be generated.
+     */
+    public static GeneratedAccessor generate(Class<?> beanClass, Method[] getters, Method[] setters) {
+        if(!Modifier.isPublic(beanClass.getModifiers())) {
+            return null;
+        }
+        ClassLoader parent = getParentClassLoader(beanClass);
+        if(parent == null) {
+            return null;
+        }
+        String beanClassName = getSourceName(beanClass);
+        StringBuilder getMethod = new StringBuilder("public Object get(Object bean, int index) { switch(index) {");
+        StringBuilder setMethod =
+                new StringBuilder("public void set(Object bean, int index, Object value) { switch(index) {");
+        for(int i = 0; i < getters.length; i++) {
+            Method getter = getters[i];
+            if(isSupported(getter)) {
+                getMethod.append("case ").append(i).append(": return ($w) ((")
+                        .append(beanClassName).append(") bean).").append(getter.getName()).append("();");
+            }
+            Method setter = setters[i];
+            if(isSupported(setter)) {
+                setMethod.append("case ").append(i).append(": ((")
+                        .append(beanClassName).append(") bean).").append(setter.getName()).append("(")
+                        .append(getUnboxExpression(setter.getParameterTypes()[0], "value")).append("); return;");
+            }
+        }
+        getMethod.append("default: throw new IndexOutOfBoundsException(String.valueOf(index)); } }");
+        setMethod.append("default: throw new IndexOutOfBoundsException(String.valueOf(index)); } }");
+
+        String className =
+                PACKAGE_NAME + ".Accessor$" + counter.incrementAndGet() + "$" + beanClass.getSimpleName();
+        try {
+            ClassPool classPool = new ClassPool(true);
+            classPool.appendClassPath(new LoaderClassPath(GeneratedAccessor.class.getClassLoader()));
+            classPool.appendClassPath(new LoaderClassPath(parent));
+            CtClass ctClass = classPool.makeClass(className, classPool.get(GeneratedAccessor.class.getName()));
+            ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+            ctClass.addMethod(CtNewMethod.make(getMethod.toString(), ctClass));
+            ctClass.addMethod(CtNewMethod.make(setMethod.toString(), ctClass));
+            byte[] bytecode = ctClass.toBytecode();
+            ctClass.detach();
+            Class<?> accessorClass = new AccessorClassLoader(parent).define(className, bytecode);
+            return (GeneratedAccessor) accessorClass.newInstance();
+        } catch (Throwable e) {
+            logger.debug("Could not generate accessor for " + beanClass + ", using reflection", e);
+            return null;
+        }
+    }
+
+    protected static boolean isSupported(Method method) {
+        return method != null &&
+               Modifier.isPublic(method.getModifiers()) &&
+               Modifier.isPublic(method.getDeclaringClass().getModifiers()) &&
+               !Modifier.isStatic(method.getModifiers());
+    }
+
+    /**
+     * Returns a class loader that sees both the bean class and {@link GeneratedAccessor}, or null if there's none.
+     */
+    protected static ClassLoader getParentClassLoader(Class<?> beanClass) {
+        ClassLoader beanClassLoader = beanClass.getClassLoader();
+        if(isVisible(GeneratedAccessor.class, beanClassLoader)) {
+            return beanClassLoader;
+        }
+        ClassLoader accessorClassLoader = GeneratedAccessor.class.getClassLoader();
+        if(isVisible(beanClass, accessorClassLoader)) {
+            return accessorClassLoader;
+        }
+        return null;
+    }
+
+    protected static boolean isVisible(Class<?> theClass, ClassLoader classLoader) {
+        if(classLoader == null) {
+            return theClass.getClassLoader() == null;
+        }
+        try {
+            return Class.forName(theClass.getName(), false, classLoader) == theClass;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    protected static String getSourceName(Class<?> theClass) {
+        if(theClass.isArray()) {
+            return getSourceName(theClass.getComponentType()) + "[]";
+        } else {
+            return theClass.getName();
+        }
+    }
+
+    protected static String getUnboxExpression(Class<?> type, String variable) {
+        if(type == Boolean.TYPE) {
+            return "((Boolean) " + variable + ").booleanValue()";
+        } else if(type == Character.TYPE) {
+            return "((Character) " + variable + ").charValue()";
+        } else if(type == Byte.TYPE) {
+            return "((Byte) " + variable + ").byteValue()";
+        } else if(type == Short.TYPE) {
+            return "((Short) " + variable + ").shortValue()";
+        } else if(type == Integer.TYPE) {
+            return "((Integer) " + variable + ").intValue()";
+        } else if(type == Long.TYPE) {
+            return "((Long) " + variable + ").longValue()";
+        } else if(type == Float.TYPE) {
+            return "((Float) " + variable + ").floatValue()";
+        } else if(type == Double.TYPE) {
+            return "((Double) " + variable + ").doubleValue()";
+        } else {
+            return "(" + getSourceName(type) + ") " + variable;
+        }
+    }
+
+    protected static class AccessorClassLoader extends ClassLoader {
+        public AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
@@ -22,6 +22,7 @@ package com.manydesigns.elements.reflection;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.manydesigns.elements.ElementsProperties;
 import com.manydesigns.elements.annotations.Key;
 import com.manydesigns.elements.util.ReflectionUtil;
 import org.apache.commons.lang.ArrayUtils;
@@ -35,6 +36,7 @@ import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
 
@@ -63,6 +65,7 @@ public class JavaClassAccessor implements ClassAccessor {
     protected final Class javaClass;
     protected final PropertyAccessor[] propertyAccessors;
     protected final PropertyAccessor[] keyPropertyAccessors;
+    protected final Map<String, PropertyAccessor> propertyAccessorsByName;
 
     //**************************************************************************
     // Static fields and methods
@@ -81,6 +84,10 @@ public class JavaClassAccessor implements ClassAccessor {
         if (cachedResult == null) {
             logger.debug("Cache miss for: {}", javaClass);
             cachedResult = new JavaClassAccessor(javaClass);
+            if (ElementsProperties.getConfiguration().getBoolean(
+                    ElementsProperties.REFLECTION_GENERATE_ACCESSORS, true)) {
+                cachedResult.generateAccessors();
+            }
             logger.debug("Caching key: {} - Value: {}",
                     javaClass, cachedResult);
             classAccessorCache.put(javaClass, cachedResult);
@@ -106,6 +113,44 @@ public class JavaClassAccessor implements ClassAccessor {
         List<PropertyAccessor> keyAccessors = setupKeyPropertyAccessors();
         keyPropertyAccessors = new PropertyAccessor[keyAccessors.size()];
         keyAccessors.toArray(keyPropertyAccessors);
+
+        propertyAccessorsByName = new HashMap<String, PropertyAccessor>(propertyAccessors.length * 2);
+        for (PropertyAccessor current : propertyAccessors) {
+            if (!propertyAccessorsByName.containsKey(current.getName())) {
+                propertyAccessorsByName.put(current.getName(), current);
+            }
+        }
+    }
+
+    /**
+     * Replaces reflective calls to getters and setters with a generated accessor (see {@link AccessorGenerator}),
+     * when possible. Only done for cached class accessors, as generating classes is expensive.
+     */
+    protected void generateAccessors() {
+        List<JavaPropertyAccessor> accessors = new ArrayList<JavaPropertyAccessor>();
+        for (PropertyAccessor current : propertyAccessors) {
+            if (current instanceof JavaPropertyAccessor) {
+                accessors.add((JavaPropertyAccessor) current);
+            }
+        }
+        if (accessors.isEmpty()) {
+            return;
+        }
+        Method[] getters = new Method[accessors.size()];
+        Method[] setters = new Method[accessors.size()];
+        for (int i = 0; i < getters.length; i++) {
+            getters[i] = accessors.get(i).getGetter();
+            setters[i] = accessors.get(i).getSetter();
+        }
+        GeneratedAccessor generatedAccessor = AccessorGenerator.generate(javaClass, getters, setters);
+        if (generatedAccessor == null) {
+            return;
+        }
+        for (int i = 0; i < getters.length; i++) {
+            accessors.get(i).setGeneratedAccessor(
+                    generatedAccessor, i,
+                    AccessorGenerator.isSupported(getters[i]), AccessorGenerator.isSupported(setters[i]));
+        }
     }
 
     protected List<PropertyAccessor> setupPropertyAccessors() {
@@ -229,12 +274,11 @@ public class JavaClassAccessor implements ClassAccessor {
 
     public PropertyAccessor getProperty(String propertyName)
             throws NoSuchFieldException {
-        for (PropertyAccessor current : propertyAccessors) {
-            if (current.getName().equals(propertyName)) {
-                return current;
-            }
+        PropertyAccessor propertyAccessor = propertyAccessorsByName.get(propertyName);
+        if (propertyAccessor == null) {
+            throw new NoSuchFieldException(propertyName);
         }
-        throw new NoSuchFieldException(propertyName);
+        return propertyAccessor;
     }
 
     public PropertyAccessor[] getProperties() {
@@ -20,6 +20,7 @@
 
 package com.manydesigns.elements.reflection;
 
+import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +49,13 @@ public class JavaPropertyAccessor extends AbstractAnnotatedAccessor implements P
     private final PropertyDescriptor propertyDescriptor;
     private final Method getter;
     private final Method setter;
+    private final Class<?> setterValueType;
+
+    //Generated accessor, see JavaClassAccessor#generateAccessors
+    private GeneratedAccessor generatedAccessor;
+    private int generatedIndex;
+    private boolean generatedGetter;
+    private boolean generatedSetter;
 
     public final static Logger logger =
             LoggerFactory.getLogger(JavaPropertyAccessor.class);
@@ -60,6 +68,7 @@ public class JavaPropertyAccessor extends AbstractAnnotatedAccessor implements P
         this.propertyDescriptor = propertyDescriptor;
         getter = propertyDescriptor.getReadMethod();
         setter = propertyDescriptor.getWriteMethod();
+        setterValueType = setter != null ? ClassUtils.primitiveToWrapper(setter.getParameterTypes()[0]) : null;
         try {
             Field field = getter.getDeclaringClass().getDeclaredField(propertyDescriptor.getName());
             for(Annotation ann : field.getAnnotations()) {
@@ -98,6 +107,14 @@ public class JavaPropertyAccessor extends AbstractAnnotatedAccessor implements P
     }
 
     public Object get(Object obj) {
+        if (generatedGetter) {
+            try {
+                return generatedAccessor.get(obj, generatedIndex);
+            } catch (Throwable e) {
+                throw new ReflectionException(
+                        String.format("Cannot get property: %s", getName()), e);
+            }
+        }
         try {
             return getter.invoke(obj);
         } catch (IllegalAccessException e) {
@@ -113,7 +130,16 @@ public class JavaPropertyAccessor extends AbstractAnnotatedAccessor implements P
         if (setter == null) {
             throw new ReflectionException(String.format(
                     "Setter not available for property: %s", getName()));
+        } else if (generatedSetter &&
+                   (value == null ? !setter.getParameterTypes()[0].isPrimitive() : setterValueType.isInstance(value))) {
+            try {
+                generatedAccessor.set(obj, generatedIndex, value);
+            } catch (Throwable e) {
+                throw new ReflectionException(
+                        String.format("Cannot set property: %s", getName()), e);
+            }
         } else {
+            //Also handles values of the wrong type, that the generated accessor would not report consistently
             try {
                 setter.invoke(obj, value);
             } catch (IllegalAccessException e) {
@@ -127,6 +153,28 @@ public class JavaPropertyAccessor extends AbstractAnnotatedAccessor implements P
         }
     }
 
+    public Method getGetter() {
+        return getter;
+    }
+
+    public Method getSetter() {
+        return setter;
+    }
+
+    /**
+     * Makes this accessor use a generated accessor instead of reflection.
+     * @param generatedAccessor the generated accessor.
+     * @param index the index of this property in the generated accessor.
+     * @param getter whether the generated accessor supports reading the property.
+     * @param setter whether the generated accessor supports writing the property.
+     */
+    void setGeneratedAccessor(GeneratedAccessor generatedAccessor, int index, boolean getter, boolean setter) {
+        this.generatedAccessor = generatedAccessor;
+        this.generatedIndex = index;
+        this.generatedGetter = getter;
+        this.generatedSetter = setter;
+    }
+
     //**************************************************************************
     // Overrides
     //**************************************************************************
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.elements.xml;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shared JAXB contexts, one per package, with pools of marshallers and unmarshallers. Creating a JAXBContext is
+ * expensive, while contexts are thread safe and can be reused; marshallers and unmarshallers are cheaper, but they
+ * are not thread safe, so each is used by one thread at a time, then released to the pool.<br>
+ * Pooled objects keep the properties set by previous users: callers must set all the properties they rely on.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class JAXBContextRegistry {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final int MAX_CONTEXTS = 100;
+    public static final int POOL_SIZE = 8;
+
+    public static final Logger logger = LoggerFactory.getLogger(JAXBContextRegistry.class);
+
+    //Keyed by class loader, then by package name, so that packages with the same name in different class loaders
+    //(e.g. reloaded scripts) get different contexts. Class loaders are held weakly; since the contexts reference
+    //classes of their loader, they are held softly, otherwise they would keep the loader reachable.
+    protected static final LoadingCache<ClassLoader, LoadingCache<String, PooledContext>> contexts =
+            CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .softValues()
+                    .build(new CacheLoader<ClassLoader, LoadingCache<String, PooledContext>>() {
+                        @Override
+                        public LoadingCache<String, PooledContext> load(final ClassLoader classLoader) {
+                            return CacheBuilder.newBuilder()
+                                    .maximumSize(MAX_CONTEXTS)
+                                    .build(new CacheLoader<String, PooledContext>() {
+                                        @Override
+                                        public PooledContext load(String packageName) throws Exception {
+                                            logger.debug("Creating JAXB context for package {}", packageName);
+                                            return new PooledContext(
+                                                    JAXBContext.newInstance(packageName, classLoader));
+                                        }
+                                    });
+                        }
+                    });
+
+    /**
+     * Returns the shared context of the package of a class.
+     * @param packageClass a class in the package.
+     * @return the context and its pools.
+     * @throws JAXBException if the context cannot be created.
+     */
+    public static PooledContext get(Class<?> packageClass) throws JAXBException {
+        try {
+            ClassLoader classLoader = packageClass.getClassLoader();
+            if(classLoader == null) {
+                classLoader = ClassLoader.getSystemClassLoader();
+            }
+            return contexts.get(classLoader).get(packageClass.getPackage().getName());
+        } catch (ExecutionException e) {
+            throw toJAXBException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw toJAXBException(e.getCause());
+        }
+    }
+
+    public static JAXBContext getContext(Class<?> packageClass) throws JAXBException {
+        return get(packageClass).getContext();
+    }
+
+    protected static JAXBException toJAXBException(Throwable cause) {
+        if(cause instanceof JAXBException) {
+            return (JAXBException) cause;
+        }
+        return new JAXBException(cause);
+    }
+
+    public static void clear() {
+        contexts.invalidateAll();
+    }
+
+    public static class PooledContext {
+        protected final JAXBContext context;
+        protected final BlockingQueue<Marshaller> marshallers = new ArrayBlockingQueue<Marshaller>(POOL_SIZE);
+        protected final BlockingQueue<Unmarshaller> unmarshallers = new ArrayBlockingQueue<Unmarshaller>(POOL_SIZE);
+
+        public PooledContext(JAXBContext context) {
+            this.context = context;
+        }
+
+        public JAXBContext getContext() {
+            return context;
+        }
+
+        /**
+         * Takes a marshaller from the pool, or creates a new one if the pool is empty. It should be returned with
+         * {@link #release(Marshaller)} after use.
+         */
+        public Marshaller acquireMarshaller() throws JAXBException {
+            Marshaller marshaller = marshallers.poll();
+            return marshaller != null ? marshaller : context.createMarshaller();
+        }
+
+        public void release(Marshaller marshaller) {
+            marshallers.offer(marshaller);
+        }
+
+        /**
+         * Takes an unmarshaller from the pool, or creates a new one if the pool is empty. It should be returned with
+         * {@link #release(Unmarshaller)} after use.
+         */
+        public Unmarshaller acquireUnmarshaller() throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+            return unmarshaller != null ? unmarshaller : context.createUnmarshaller();
+        }
+
+        public void release(Unmarshaller unmarshaller) {
+            unmarshallers.offer(unmarshaller);
+        }
+    }
+}
@@ -79,6 +79,7 @@ public class ConnectionProvidersAction extends AbstractActionBean {
     public TableForm tableForm;
     public Form form;
     public Form detectedValuesForm;
+    public Form poolForm;
     public TableForm schemasForm;
     public TableForm databasePlatformsTableForm;
 
@@ -224,6 +225,21 @@ public class ConnectionProvidersAction extends AbstractActionBean {
                 .configMode(Mode.VIEW)
                 .build();
         detectedValuesForm.readFromObject(connectionProvider);
+        if(connectionProvider instanceof JdbcConnectionProvider &&
+           ((JdbcConnectionProvider) connectionProvider).getPool() != null) {
+            poolForm = new FormBuilder(JdbcConnectionPool.class)
+                    .configFields(
+                            "minSize",
+                            "maxSize",
+                            "activeConnections",
+                            "idleConnections",
+                            "waitingThreads",
+                            "acquireTimeouts"
+                            )
+                    .configMode(Mode.VIEW)
+                    .build();
+            poolForm.readFromObject(((JdbcConnectionProvider) connectionProvider).getPool());
+        }
     }
 
     protected void configureEditSchemas() {
@@ -477,6 +493,10 @@ public class ConnectionProvidersAction extends AbstractActionBean {
         return detectedValuesForm;
     }
 
+    public Form getPoolForm() {
+        return poolForm;
+    }
+
     public TableForm getSchemasForm() {
         return schemasForm;
     }
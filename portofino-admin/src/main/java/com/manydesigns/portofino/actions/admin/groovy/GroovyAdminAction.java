@@ -23,6 +23,7 @@ package com.manydesigns.portofino.actions.admin.groovy;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.messages.SessionMessages;
 import com.manydesigns.elements.ognl.OgnlUtils;
+import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.buttons.annotations.Button;
 import com.manydesigns.portofino.di.Inject;
 import com.manydesigns.portofino.modules.BaseModule;
@@ -31,6 +32,7 @@ import com.manydesigns.portofino.security.RequiresAdministrator;
 import com.manydesigns.portofino.stripes.AbstractActionBean;
 import groovy.util.GroovyScriptEngine;
 import net.sourceforge.stripes.action.*;
+import org.apache.commons.configuration.Configuration;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +58,9 @@ public class GroovyAdminAction extends AbstractActionBean {
     @Inject(BaseModule.GROOVY_CLASS_PATH)
     File groovyClasspath;
 
+    @Inject(BaseModule.PORTOFINO_CONFIGURATION)
+    Configuration configuration;
+
     //--------------------------------------------------------------------------
     // Logging
     //--------------------------------------------------------------------------
@@ -76,7 +81,8 @@ public class GroovyAdminAction extends AbstractActionBean {
         logger.info("Resetting Groovy script engine");
         ServletContext servletContext = context.getServletContext();
         GroovyScriptEngine groovyScriptEngine =
-                ScriptingUtil.createScriptEngine(groovyClasspath, getClass().getClassLoader());
+                ScriptingUtil.createScriptEngine(groovyClasspath, getClass().getClassLoader(),
+                        configuration.getBoolean(PortofinoProperties.GROOVY_RECOMPILE, true));
         ClassLoader classLoader = groovyScriptEngine.getGroovyClassLoader();
         servletContext.setAttribute(BaseModule.CLASS_LOADER, classLoader);
         servletContext.setAttribute(BaseModule.GROOVY_SCRIPT_ENGINE, groovyScriptEngine);
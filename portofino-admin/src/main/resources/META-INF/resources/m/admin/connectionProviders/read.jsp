@@ -29,6 +29,19 @@
                     <mde:write name="actionBean" property="detectedValuesForm"/>
                 </div>
             </c:if>
+            <c:if test="${actionBean.poolForm != null}">
+                <div class="horizontalSeparator"></div>
+                <h4><fmt:message key="connection.pool"/></h4>
+                <div id="poolForm">
+                    <mde:write name="actionBean" property="poolForm"/>
+                </div>
+                <h5><fmt:message key="acquire.latency"/></h5>
+                <table class="table table-condensed">
+                    <c:forEach var="bucket" items="${actionBean.connectionProvider.pool.acquireLatencyHistogram}">
+                        <tr><td><c:out value="${bucket.key}"/></td><td><c:out value="${bucket.value}"/></td></tr>
+                    </c:forEach>
+                </table>
+            </c:if>
             <stripes:hidden name="databaseName" value="${actionBean.databaseName}"/>
             <div class="form-group">
                 <portofino:buttons list="connectionProviders-read" />
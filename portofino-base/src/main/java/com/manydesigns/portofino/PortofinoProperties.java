@@ -58,6 +58,12 @@ public final class PortofinoProperties {
     //Groovy
     public static final String GROOVY_PRELOAD_PAGES = "groovy.preloadPages";
     public static final String GROOVY_PRELOAD_CLASSES = "groovy.preloadClasses";
+    //Number of threads used to preload pages, when classes are preloaded too; defaults to the number of processors
+    public static final String GROOVY_PRELOAD_THREADS = "groovy.preloadThreads";
+    //If false, scripts are compiled once and never checked for changes (production mode)
+    public static final String GROOVY_RECOMPILE = "groovy.recompile";
+    //Milliseconds between checks for changes to Security.groovy; a negative value disables reloading
+    public static final String GROOVY_SECURITY_CHECK_INTERVAL = "groovy.security.checkInterval";
 
     private PortofinoProperties() {}
 }
@@ -164,17 +164,106 @@ public class ButtonsLogic {
     }
 
     public static boolean doGuardsPass(Object actionBean, Method method, @Nullable GuardType type) {
-        List<Guard> guards = getGuards(method, type);
-        boolean pass = true;
+        GuardPlan plan;
+        try {
+            plan = methodGuards.get(new MGKey(method, type));
+        } catch (ExecutionException e) {
+            throw new Error(e);
+        }
+        if(plan.tests.length == 0) {
+            return true;
+        }
         OgnlContext ognlContext = ElementsThreadLocals.getOgnlContext();
-        for(Guard guard : guards) {
-            Object result = OgnlUtils.getValueQuietly(guard.test(), ognlContext, actionBean);
-            pass &= result instanceof Boolean && ((Boolean) result);
+        boolean compile = OgnlUtils.isCompileExpressions();
+        for(int i = 0; i < plan.tests.length; i++) {
+            Object result;
+            if(compile) {
+                result = OgnlUtils.getValueQuietly(plan.tests[i], ognlContext, actionBean);
+            } else {
+                result = OgnlUtils.getValueQuietly(plan.parsedTests[i], ognlContext, actionBean);
+            }
+            if(!(result instanceof Boolean && ((Boolean) result))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The guards of a method, of a given type, with their test expressions already parsed.
+     */
+    protected static class GuardPlan {
+        public final List<Guard> guards;
+        public final String[] tests;
+        public final Object[] parsedTests;
+
+        public GuardPlan(List<Guard> guards) {
+            this.guards = Collections.unmodifiableList(guards);
+            tests = new String[guards.size()];
+            parsedTests = new Object[guards.size()];
+            for(int i = 0; i < tests.length; i++) {
+                tests[i] = guards.get(i).test();
+                parsedTests[i] = OgnlUtils.parseExpressionQuietly(tests[i]);
+            }
+        }
+    }
+
+    protected static class MGKey {
+        public final Method method;
+        public final GuardType type;
+
+        public MGKey(Method method, GuardType type) {
+            this.method = method;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            MGKey mgKey = (MGKey) o;
+
+            if (type != mgKey.type) return false;
+            if (!method.equals(mgKey.method)) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = method.hashCode();
+            result = 31 * result + (type != null ? type.hashCode() : 0);
+            return result;
         }
-        return pass;
     }
 
+    protected static LoadingCache<MGKey, GuardPlan> methodGuards =
+            CacheBuilder
+                    .newBuilder()
+                    .maximumSize(5000)
+                    .build(new CacheLoader<MGKey, GuardPlan>() {
+                        @Override
+                        public GuardPlan load(MGKey key) throws Exception {
+                            return new GuardPlan(computeGuards(key.method, key.type));
+                        }
+                    });
+
+    /**
+     * Returns the guards of a given type on a method. The result is cached and cannot be modified.
+     * @param method the method.
+     * @param type the type of guards to return, or null to return all of them.
+     * @return the list of guards.
+     */
     public static List<Guard> getGuards(Method method, GuardType type) {
+        try {
+            return methodGuards.get(new MGKey(method, type)).guards;
+        } catch (ExecutionException e) {
+            throw new Error(e);
+        }
+    }
+
+    protected static List<Guard> computeGuards(Method method, GuardType type) {
         List<Guard> guardList = new ArrayList<Guard>();
         Guard guard = method.getAnnotation(Guard.class);
         if(guard != null && (type == null || type == guard.type())) {
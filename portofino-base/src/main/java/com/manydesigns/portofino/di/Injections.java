@@ -30,9 +30,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -47,8 +45,43 @@ public class Injections {
     public static final Logger logger =
             LoggerFactory.getLogger(Injections.class);
 
-    protected static final Map<Class, Field[]> cache =
-            new HashMap<Class, Field[]>();
+    /**
+     * Injection plans, attached to the classes themselves, so that reloaded (e.g. Groovy) classes can be
+     * garbage collected together with their plans.
+     */
+    protected static final ClassValue<InjectionPlan> plans = new ClassValue<InjectionPlan>() {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type) {
+            return new InjectionPlan(type);
+        }
+    };
+
+    /**
+     * The fields of a class annotated with {@link Inject}, made accessible, with their keys.
+     */
+    protected static class InjectionPlan {
+        public final Field[] fields;
+        public final String[] keys;
+
+        public InjectionPlan(Class<?> clazz) {
+            List<Field> foundFields = new ArrayList<Field>();
+            Class current = clazz;
+            while (current != null) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Inject.class)) {
+                        field.setAccessible(true);
+                        foundFields.add(field);
+                    }
+                }
+                current = current.getSuperclass();
+            }
+            fields = foundFields.toArray(new Field[foundFields.size()]);
+            keys = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                keys[i] = fields[i].getAnnotation(Inject.class).value();
+            }
+        }
+    }
 
     public static void inject(Object obj,
                               @Nullable ServletContext servletContext,
@@ -57,48 +90,38 @@ public class Injections {
             logger.debug("Object is null");
             return;
         }
-        Field[] fields = findAnnotatedFields(obj.getClass());
-        for (Field field : fields) {
-            logger.debug("Found annotated field: " + field);
-            Inject annotation = field.getAnnotation(Inject.class);
-            assert annotation != null;
-            String key = annotation.value();
-
-            logger.debug("Searching in request");
+        InjectionPlan plan = plans.get(obj.getClass());
+        if (plan.fields.length == 0) {
+            return;
+        }
+        HttpSession session = (request == null)
+                ? null
+                : request.getSession(false);
+        for (int i = 0; i < plan.fields.length; i++) {
+            Field field = plan.fields[i];
+            String key = plan.keys[i];
+            Object value = null;
+            String scope = null;
             if (request != null) {
-                Object value = request.getAttribute(key);
-                if (value != null) {
-                    logger.debug("Found '{}' in request: {}", key, value);
-                    setFieldQueitly(obj, field, value);
-                    continue;
-                }
+                value = request.getAttribute(key);
+                scope = "request";
             }
-
-            logger.debug("Searching in session");
-            HttpSession session = (request == null)
-                    ? null
-                    : request.getSession(false);
-            if (session != null) {
-                Object value = session.getAttribute(key);
-                if (value != null) {
-                    logger.debug("Found '{}' in session: {}", key, value);
-                    setFieldQueitly(obj, field, value);
-                    continue;
-                }
+            if (value == null && session != null) {
+                value = session.getAttribute(key);
+                scope = "session";
             }
-
-            logger.debug("Searching in servlet context");
-            if (servletContext != null) {
-                Object value = servletContext.getAttribute(key);
+            if (value == null && servletContext != null) {
+                value = servletContext.getAttribute(key);
+                scope = "servlet context";
+            }
+            if (logger.isDebugEnabled()) {
                 if (value != null) {
-                    logger.debug("Found '{}' in servlet context: {}", key, value);
-                    setFieldQueitly(obj, field, value);
-                    continue;
+                    logger.debug("Found '{}' in {}: {}", new Object[] { key, scope, value });
+                } else {
+                    logger.debug("Value of '{}' not found. Setting field {} to null.", key, field);
                 }
             }
-
-            logger.debug("Value not found. Setting field to null.");
-            setFieldQueitly(obj, field, null);
+            setFieldQueitly(obj, field, value);
         }
     }
 
@@ -113,33 +136,6 @@ public class Injections {
     }
 
     public static Field[] findAnnotatedFields(@NotNull Class clazz) {
-        Field[] result;
-        synchronized (cache) {
-            result = cache.get(clazz);
-        }
-
-        if (result != null) {
-            return result;
-        }
-
-        List<Field> foundFields = new ArrayList<Field>();
-        Class current = clazz;
-        while (current != null) {
-            for (Field field : current.getDeclaredFields()) {
-                if (field.isAnnotationPresent(Inject.class)) {
-                    field.setAccessible(true);
-                    foundFields.add(field);
-                }
-            }
-            current = current.getSuperclass();
-        }
-        result = new Field[foundFields.size()];
-        foundFields.toArray(result);
-
-        synchronized (cache) {
-            cache.put(clazz, result);
-        }
-
-        return result;
+        return plans.get(clazz).fields;
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.i18n;
+
+import java.util.*;
+
+/**
+ * Immutable resource bundle backed by a map. Lookups do not lock; to change its contents, a new instance has to be
+ * created.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class MapResourceBundle extends ResourceBundle {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    protected final Map<String, Object> messages;
+    protected final Locale locale;
+
+    public MapResourceBundle(Map<String, ?> messages, Locale locale) {
+        this.messages = Collections.unmodifiableMap(new HashMap<String, Object>(messages));
+        this.locale = locale;
+    }
+
+    public Object handleGetObject(String key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return messages.get(key);
+    }
+
+    public Enumeration<String> getKeys() {
+        Set<String> myKeys = new HashSet<String>(messages.keySet());
+        if(parent != null) {
+            Enumeration<String> parentKeysEnum = parent.getKeys();
+            while (parentKeysEnum.hasMoreElements()) {
+                myKeys.add(parentKeysEnum.nextElement());
+            }
+        }
+        return Collections.enumeration(myKeys);
+    }
+
+    @Override
+    protected Set<String> handleKeySet() {
+        return messages.keySet();
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+}
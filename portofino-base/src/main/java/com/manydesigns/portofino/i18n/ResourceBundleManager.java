@@ -23,19 +23,24 @@ package com.manydesigns.portofino.i18n;
 import org.apache.commons.configuration.CompositeConfiguration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Locale;
-import java.util.ResourceBundle;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import static java.nio.file.StandardWatchEventKinds.*;
+
 /**
+ * Loads resource bundles from a list of search paths. The bundle of each locale is an immutable snapshot, so lookups
+ * do not lock; when the files change on disk, snapshots are rebuilt and replaced (see {@link #startWatching()}).
+ *
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
  * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
@@ -46,8 +51,10 @@ public class ResourceBundleManager {
             "Copyright (C) 2005-2017 ManyDesigns srl";
 
     protected LinkedList<String> searchPaths = new LinkedList<String>();
-    protected final ConcurrentMap<Locale, ConfigurationResourceBundle> resourceBundles =
-            new ConcurrentHashMap<Locale, ConfigurationResourceBundle>();
+    protected final ConcurrentMap<Locale, ResourceBundle> resourceBundles =
+            new ConcurrentHashMap<Locale, ResourceBundle>();
+    protected WatchService watchService;
+    protected Thread watcherThread;
 
     public static final Logger logger = LoggerFactory.getLogger(ResourceBundleManager.class);
 
@@ -76,48 +83,163 @@ public class ResourceBundleManager {
     }
 
     public ResourceBundle getBundle(Locale locale) {
-        ConfigurationResourceBundle bundle = resourceBundles.get(locale);
+        ResourceBundle bundle = resourceBundles.get(locale);
         if(bundle == null) {
-            CompositeConfiguration configuration = new CompositeConfiguration();
-            Iterator<String> iterator = searchPaths.descendingIterator();
-            while(iterator.hasNext()) {
-                String path = iterator.next();
-                int index = path.lastIndexOf('/') + 1;
-                String basePath = path.substring(0, index);
-                int suffixIndex = path.length() - ".properties".length();
-                String resourceBundleBaseName = path.substring(index, suffixIndex);
-                String bundleName = getBundleFileName(resourceBundleBaseName, locale);
-                PropertiesConfiguration conf;
+            bundle = loadBundle(locale);
+            //TODO setParent?
+            resourceBundles.put(locale, bundle);
+        }
+        return bundle;
+    }
+
+    /**
+     * Reads the messages for the given locale from all the search paths and flattens them into an immutable
+     * snapshot. Paths added later take precedence.
+     * @param locale the locale.
+     * @return the bundle.
+     */
+    protected ResourceBundle loadBundle(Locale locale) {
+        CompositeConfiguration configuration = new CompositeConfiguration();
+        Iterator<String> iterator = searchPaths.descendingIterator();
+        while(iterator.hasNext()) {
+            String path = iterator.next();
+            int index = path.lastIndexOf('/') + 1;
+            String basePath = path.substring(0, index);
+            int suffixIndex = path.length() - ".properties".length();
+            String resourceBundleBaseName = path.substring(index, suffixIndex);
+            String bundleName = getBundleFileName(resourceBundleBaseName, locale);
+            PropertiesConfiguration conf;
+            try {
+                conf = new PropertiesConfiguration();
+                conf.setFileName(basePath + bundleName);
+                conf.setDelimiterParsingDisabled(true);
+                conf.load();
+            } catch (ConfigurationException e) {
+                logger.debug("Couldn't load resource bundle for locale " + locale + " from " + basePath, e);
+                //Fall back to default .properties without _locale
                 try {
+                    String defaultBundleName = basePath + resourceBundleBaseName + ".properties";
                     conf = new PropertiesConfiguration();
-                    conf.setFileName(basePath + bundleName);
+                    conf.setFileName(defaultBundleName);
                     conf.setDelimiterParsingDisabled(true);
                     conf.load();
-                } catch (ConfigurationException e) {
-                    logger.debug("Couldn't load resource bundle for locale " + locale + " from " + basePath, e);
-                    //Fall back to default .properties without _locale
+                } catch (ConfigurationException e1) {
+                    logger.debug("Couldn't load default resource bundle from " + basePath, e1);
+                    conf = null;
+                }
+            }
+            if(conf != null) {
+                configuration.addConfiguration(conf);
+            }
+        }
+        Map<String, Object> messages = new HashMap<String, Object>();
+        Iterator<String> keys = configuration.getKeys();
+        while(keys.hasNext()) {
+            String key = keys.next();
+            messages.put(key, configuration.getProperty(key));
+        }
+        return new MapResourceBundle(messages, locale);
+    }
+
+    /**
+     * Reloads the bundles of all the locales that have been requested so far, replacing them atomically.
+     */
+    public void reload() {
+        for(Locale locale : resourceBundles.keySet()) {
+            resourceBundles.put(locale, loadBundle(locale));
+        }
+    }
+
+    //**************************************************************************
+    // Change detection
+    //**************************************************************************
+
+    /**
+     * Starts watching the directories of the search paths that are on the file system, on a background thread.
+     * When a .properties file changes, the bundles are reloaded.
+     * @throws IOException if the directories cannot be watched.
+     */
+    public synchronized void startWatching() throws IOException {
+        if(watcherThread != null) {
+            return;
+        }
+        Set<Path> directories = new HashSet<Path>();
+        for(String path : searchPaths) {
+            File directory = getSearchPathDirectory(path);
+            if(directory != null && directory.isDirectory()) {
+                directories.add(directory.toPath());
+            }
+        }
+        if(directories.isEmpty()) {
+            return;
+        }
+        final WatchService watchService = FileSystems.getDefault().newWatchService();
+        for(Path directory : directories) {
+            directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        }
+        this.watchService = watchService;
+        watcherThread = new Thread(new Runnable() {
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key;
                     try {
-                        String defaultBundleName = basePath + resourceBundleBaseName + ".properties";
-                        conf = new PropertiesConfiguration();
-                        conf.setFileName(defaultBundleName);
-                        conf.setDelimiterParsingDisabled(true);
-                        conf.load();
-                    } catch (ConfigurationException e1) {
-                        logger.debug("Couldn't load default resource bundle from " + basePath, e1);
-                        conf = null;
+                        key = watchService.take();
+                    } catch (InterruptedException e) {
+                        break;
+                    } catch (ClosedWatchServiceException e) {
+                        break;
+                    }
+                    boolean changed = false;
+                    for(WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.kind() == OVERFLOW ||
+                                   event.context().toString().endsWith(".properties");
+                    }
+                    key.reset();
+                    if(changed) {
+                        logger.info("Resource bundles changed, reloading");
+                        try {
+                            reload();
+                        } catch (Exception e) {
+                            logger.error("Could not reload resource bundles", e);
+                        }
                     }
-                }
-                if(conf != null) {
-                    FileChangedReloadingStrategy reloadingStrategy = new FileChangedReloadingStrategy();
-                    conf.setReloadingStrategy(reloadingStrategy);
-                    configuration.addConfiguration(conf);
                 }
             }
-            bundle = new ConfigurationResourceBundle(configuration, locale);
-            //TODO setParent?
-            resourceBundles.put(locale, bundle);
+        }, "portofino-i18n-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("Watching resource bundles in {}", directories);
+    }
+
+    public synchronized void stopWatching() {
+        if(watcherThread == null) {
+            return;
         }
-        return bundle;
+        watcherThread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the watch service", e);
+        }
+        watcherThread = null;
+        watchService = null;
+    }
+
+    protected File getSearchPathDirectory(String searchPath) {
+        File file;
+        if(searchPath.startsWith("file:")) {
+            try {
+                file = new File(new URI(searchPath));
+            } catch (Exception e) {
+                logger.debug("Not a file: " + searchPath, e);
+                return null;
+            }
+        } else if(searchPath.contains(":/") && !new File(searchPath).isAbsolute()) {
+            return null; //jar:, vfs:, etc.
+        } else {
+            file = new File(searchPath);
+        }
+        return file.getParentFile();
     }
 
     public void addSearchPath(String searchPath) {
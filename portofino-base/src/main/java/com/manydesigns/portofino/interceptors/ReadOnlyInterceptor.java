@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.interceptors;
+
+import com.manydesigns.portofino.persistence.ReadOnly;
+import net.sourceforge.stripes.action.Resolution;
+import net.sourceforge.stripes.controller.ExecutionContext;
+import net.sourceforge.stripes.controller.Interceptor;
+import net.sourceforge.stripes.controller.Intercepts;
+import net.sourceforge.stripes.controller.LifecycleStage;
+
+import java.lang.reflect.Method;
+
+/**
+ * Marks the request as read-only if its handler is annotated with {@link ReadOnly}. It runs before event handling,
+ * so that action beans see the mark when they open their database sessions.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+@Intercepts(LifecycleStage.BindingAndValidation)
+public class ReadOnlyInterceptor implements Interceptor {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public Resolution intercept(ExecutionContext context) throws Exception {
+        Method handler = context.getHandler();
+        if(handler != null && isReadOnly(handler, context.getActionBean().getClass())) {
+            context.getActionBeanContext().getRequest().setAttribute(ReadOnly.REQUEST_ATTRIBUTE, true);
+        }
+        return context.proceed();
+    }
+
+    public static boolean isReadOnly(Method handler, Class<?> actionBeanClass) {
+        return handler.isAnnotationPresent(ReadOnly.class) ||
+               actionBeanClass.isAnnotationPresent(ReadOnly.class);
+    }
+}
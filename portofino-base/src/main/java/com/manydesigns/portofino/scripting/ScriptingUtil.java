@@ -64,10 +64,26 @@ public class ScriptingUtil {
     }
 
     public static GroovyScriptEngine createScriptEngine(File classpathFile, ClassLoader parent) {
+        return createScriptEngine(classpathFile, parent, true);
+    }
+
+    /**
+     * Creates a script engine.
+     * @param classpathFile the directory of shared Groovy classes.
+     * @param parent the parent class loader.
+     * @param recompile if true, scripts are recompiled when their source changes (development mode). If false, each
+     *                  script is compiled the first time it's loaded and its source is not checked again.
+     * @return the script engine.
+     */
+    public static GroovyScriptEngine createScriptEngine(File classpathFile, ClassLoader parent, boolean recompile) {
         CompilerConfiguration cc = new CompilerConfiguration(CompilerConfiguration.DEFAULT);
         String classpath = classpathFile.getAbsolutePath();
         cc.setClasspath(classpath);
-        cc.setRecompileGroovySource(true);
+        cc.setRecompileGroovySource(recompile);
+        if(!recompile) {
+            //GroovyScriptEngine checks the sources at most once per interval, regardless of the setting above
+            cc.setMinimumRecompilationInterval(Integer.MAX_VALUE);
+        }
         GroovyScriptEngine scriptEngine;
         try {
             scriptEngine =
@@ -76,7 +92,7 @@ public class ScriptingUtil {
             throw new Error(e);
         }
         scriptEngine.setConfig(cc);
-        scriptEngine.getGroovyClassLoader().setShouldRecompile(true);
+        scriptEngine.getGroovyClassLoader().setShouldRecompile(recompile);
         return scriptEngine;
     }
 }
@@ -201,7 +201,8 @@ public class PortofinoListener
         logger.debug("Registering Groovy class loader");
         logger.info("Groovy classpath: " + groovyClasspath.getAbsolutePath());
         GroovyScriptEngine groovyScriptEngine =
-                ScriptingUtil.createScriptEngine(groovyClasspath, getClass().getClassLoader());
+                ScriptingUtil.createScriptEngine(groovyClasspath, getClass().getClassLoader(),
+                        configuration.getBoolean(PortofinoProperties.GROOVY_RECOMPILE, true));
         ClassLoader classLoader = groovyScriptEngine.getGroovyClassLoader();
         servletContext.setAttribute(BaseModule.GROOVY_CLASS_PATH, groovyClasspath);
         servletContext.setAttribute(BaseModule.CLASS_LOADER, classLoader);
@@ -219,6 +220,11 @@ public class PortofinoListener
         } catch (IOException e) {
             logger.warn("Could not initialize resource bundle manager", e);
         }
+        try {
+            resourceBundleManager.startWatching();
+        } catch (IOException e) {
+            logger.warn("Could not watch resource bundles for changes", e);
+        }
         servletContext.setAttribute(BaseModule.RESOURCE_BUNDLE_MANAGER, resourceBundleManager);
 
         logger.info("Servlet API version is " + serverInfo.getServletApiVersion());
@@ -285,6 +291,11 @@ public class PortofinoListener
         moduleRegistry.stop();
         logger.info("Destroying modules...");
         moduleRegistry.destroy();
+        ResourceBundleManager resourceBundleManager =
+                (ResourceBundleManager) servletContext.getAttribute(BaseModule.RESOURCE_BUNDLE_MANAGER);
+        if(resourceBundleManager != null) {
+            resourceBundleManager.stopWatching();
+        }
         logger.info("ManyDesigns Portofino stopped.");
     }
 
@@ -23,6 +23,7 @@ package com.manydesigns.portofino.chart;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
+import com.manydesigns.portofino.persistence.ResultHandler;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Session;
 import org.jfree.chart.JFreeChart;
@@ -61,18 +62,19 @@ public abstract class Chart1DGenerator extends AbstractChartGenerator {
     private final Color transparentColor = new Color(0, true);
 
     public JFreeChart generate(ChartDefinition chartDefinition, Persistence persistence, Locale locale) {
-        DefaultPieDataset dataset = new DefaultPieDataset();
-        java.util.List<Object[]> result;
+        final DefaultPieDataset dataset = new DefaultPieDataset();
         String query = chartDefinition.getQuery();
         Session session = persistence.getSession(chartDefinition.getDatabase());
-        result = QueryUtils.runSql(session, query);
-        for (Object[] current : result) {
-            ComparableWrapper key = new ComparableWrapper((Comparable)current[0]);
-            dataset.setValue(key, (Number)current[1]);
-            if(current.length > 2) {
-                key.setLabel(current[2].toString());
+        QueryUtils.scrollSql(session, query, new ResultHandler<Object[]>() {
+            public boolean handle(Object[] current) {
+                ComparableWrapper key = new ComparableWrapper((Comparable)current[0]);
+                dataset.setValue(key, (Number)current[1]);
+                if(current.length > 2) {
+                    key.setLabel(current[2].toString());
+                }
+                return true;
             }
-        }
+        });
 
         JFreeChart chart = createChart(chartDefinition, dataset);
 
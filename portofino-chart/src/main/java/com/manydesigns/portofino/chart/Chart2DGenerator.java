@@ -23,6 +23,7 @@ package com.manydesigns.portofino.chart;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
+import com.manydesigns.portofino.persistence.ResultHandler;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Session;
 import org.jfree.chart.JFreeChart;
@@ -65,22 +66,23 @@ public abstract class Chart2DGenerator extends AbstractChartGenerator {
     private final Color transparentColor = new Color(0, true);
 
     public JFreeChart generate(ChartDefinition chartDefinition, Persistence persistence, Locale locale) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        java.util.List<Object[]> result;
+        final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         String query = chartDefinition.getQuery();
         Session session = persistence.getSession(chartDefinition.getDatabase());
-        result = QueryUtils.runSql(session, query);
-        for (Object[] current : result) {
-            ComparableWrapper x = new ComparableWrapper((Comparable)current[0]);
-            ComparableWrapper y = new ComparableWrapper((Comparable)current[1]);
-            if(current.length > 3) {
-                x.setLabel(current[3].toString());
+        QueryUtils.scrollSql(session, query, new ResultHandler<Object[]>() {
+            public boolean handle(Object[] current) {
+                ComparableWrapper x = new ComparableWrapper((Comparable)current[0]);
+                ComparableWrapper y = new ComparableWrapper((Comparable)current[1]);
+                if(current.length > 3) {
+                    x.setLabel(current[3].toString());
+                }
+                if(current.length > 4) {
+                    y.setLabel(current[4].toString());
+                }
+                dataset.setValue((Number)current[2], x, y);
+                return true;
             }
-            if(current.length > 4) {
-                y.setLabel(current[4].toString());
-            }
-            dataset.setValue((Number)current[2], x, y);
-        }
+        });
 
         PlotOrientation plotOrientation = PlotOrientation.HORIZONTAL;
         if (chartDefinition.getActualOrientation() == ChartDefinition.Orientation.VERTICAL) {
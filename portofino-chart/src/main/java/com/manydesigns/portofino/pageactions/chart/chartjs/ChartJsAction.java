@@ -40,6 +40,7 @@ import com.manydesigns.portofino.pageactions.annotations.ScriptTemplate;
 import com.manydesigns.portofino.pageactions.chart.chartjs.configuration.ChartJsConfiguration;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
+import com.manydesigns.portofino.persistence.ReadOnly;
 import com.manydesigns.portofino.security.AccessLevel;
 import com.manydesigns.portofino.security.RequiresPermissions;
 import net.sourceforge.stripes.action.DefaultHandler;
@@ -87,6 +88,7 @@ public class ChartJsAction extends AbstractPageAction {
     //**************************************************************************
 
     @DefaultHandler
+    @ReadOnly
     public Resolution execute() {
         if(chartConfiguration == null) {
             return forwardToPageActionNotConfigured();
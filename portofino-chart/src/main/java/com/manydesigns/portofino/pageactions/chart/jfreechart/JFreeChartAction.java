@@ -40,6 +40,7 @@ import com.manydesigns.portofino.pageactions.annotations.ConfigurationClass;
 import com.manydesigns.portofino.pageactions.annotations.ScriptTemplate;
 import com.manydesigns.portofino.pageactions.chart.jfreechart.configuration.JFreeChartConfiguration;
 import com.manydesigns.portofino.persistence.Persistence;
+import com.manydesigns.portofino.persistence.ReadOnly;
 import com.manydesigns.portofino.security.AccessLevel;
 import com.manydesigns.portofino.security.RequiresPermissions;
 import net.sourceforge.stripes.action.*;
@@ -116,6 +117,7 @@ public class JFreeChartAction extends AbstractPageAction {
     //**************************************************************************
 
     @DefaultHandler
+    @ReadOnly
     public Resolution execute() {
         if(chartConfiguration == null) {
             return forwardToPageActionNotConfigured();
@@ -171,6 +173,7 @@ public class JFreeChartAction extends AbstractPageAction {
         chart = chartGenerator.generate(chartConfiguration, persistence, context.getLocale());
     }
 
+    @ReadOnly
     public Resolution chart() throws FileNotFoundException {
         final File file = RandomUtil.getTempCodeFile(CHART_FILENAME_FORMAT, chartId);
         if(!file.exists()) {
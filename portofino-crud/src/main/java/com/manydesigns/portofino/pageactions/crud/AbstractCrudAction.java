@@ -20,6 +20,7 @@
 
 package com.manydesigns.portofino.pageactions.crud;
 
+import com.google.common.collect.Lists;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.FormElement;
 import com.manydesigns.elements.Mode;
@@ -61,6 +62,7 @@ import com.manydesigns.portofino.pageactions.crud.configuration.CrudConfiguratio
 import com.manydesigns.portofino.pageactions.crud.configuration.CrudProperty;
 import com.manydesigns.portofino.pageactions.crud.configuration.VirtualCrudProperty;
 import com.manydesigns.portofino.pageactions.crud.reflection.CrudAccessor;
+import com.manydesigns.portofino.persistence.ReadOnly;
 import com.manydesigns.portofino.security.AccessLevel;
 import com.manydesigns.portofino.security.RequiresPermissions;
 import com.manydesigns.portofino.security.SupportsPermissions;
@@ -177,6 +179,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     public String successReturnUrl;
     public Integer firstResult;
     public Integer maxResults;
+    public String cursor;
     public String sortProperty;
     public String sortDirection;
     public boolean searchVisible;
@@ -215,6 +218,12 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     public T object;
     public List<? extends T> objects;
 
+    /**
+     * With keyset pagination, the cursor that identifies the page following the loaded objects (null if there are
+     * no more objects).
+     */
+    protected String nextCursor;
+
     @Inject(BaseModule.DEFAULT_BLOB_MANAGER)
     protected BlobManager blobManager;
 
@@ -257,6 +266,24 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
      */
     protected abstract T loadObjectByPrimaryKey(Serializable pkObject);
 
+    /**
+     * Loads several objects by their identifiers. Objects that couldn't be found or didn't satisfy the search
+     * criteria are omitted. The default implementation calls {@link #loadObjectByPrimaryKey(Serializable)} for
+     * each identifier; subclasses are encouraged to load all the objects at once.
+     * @param pkObjects the identifiers of the objects.
+     * @return the loaded objects.
+     */
+    protected List<T> loadObjectsByPrimaryKey(List<Serializable> pkObjects) {
+        List<T> objects = new ArrayList<T>(pkObjects.size());
+        for(Serializable pkObject : pkObjects) {
+            T object = loadObjectByPrimaryKey(pkObject);
+            if(object != null) {
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
     /**
      * Saves a new object to the persistent storage. The actual implementation is left to subclasses.
      * @param object the object to save.
@@ -279,6 +306,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     protected abstract void doDelete(T object);
 
     @DefaultHandler
+    @ReadOnly
     public Resolution execute() {
         if (object == null) {
             return doSearch();
@@ -304,6 +332,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
         @Button(list = "crud-search-form", key = "search", order = 1, type = Button.TYPE_PRIMARY, icon = Button.ICON_SEARCH),
         @Button(list = "crud-search-form-default-button", key = "search" )
     })
+    @ReadOnly
     public Resolution search() {
         //Not really used. Search is AJAX these days.
         return doSearch();
@@ -341,6 +370,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
      * return a complete page, but only a fragment.
      * @return the result of {@link #getSearchResultsPageView()}
      */
+    @ReadOnly
     public Resolution getSearchResultsPage() {
         if(!isConfigured()) {
             logger.debug("Crud not correctly configured");
@@ -368,6 +398,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
         BlobUtils.loadBlobs(tableForm, getBlobManager(), false);
     }
 
+    @ReadOnly
     public Resolution jsonSearchData() throws JSONException {
         executeSearch();
 
@@ -380,10 +411,15 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
                 .key("recordsReturned")
                 .value(objects.size())
                 .key("totalRecords")
-                .value(totalRecords)
+                .value(totalRecords >= 0 ? (Object) totalRecords : null)
+                .key("totalRecordsEstimated")
+                .value(isTotalSearchRecordsEstimated())
                 .key("startIndex")
-                .value(firstResult == null ? 0 : firstResult)
-                .key("Result")
+                .value(firstResult == null ? 0 : firstResult);
+        if(isKeysetPagination()) {
+            js.key("nextCursor").value(nextCursor);
+        }
+        js.key("Result")
                 .array();
         for (TableForm.Row row : tableForm.getRows()) {
             js.object()
@@ -400,26 +436,38 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
             protected void applyHeaders(HttpServletResponse response) {
                 super.applyHeaders(response);
                 Integer rowsPerPage = getCrudConfiguration().getRowsPerPage();
-                if(rowsPerPage != null && totalRecords > rowsPerPage) {
-                    int firstResult = getFirstResult() != null ? getFirstResult() : 1;
-                    int currentPage = firstResult / rowsPerPage;
-                    int lastPage = (int) (totalRecords / rowsPerPage);
-                    if(totalRecords % rowsPerPage == 0) {
-                        lastPage--;
-                    }
+                if(rowsPerPage != null && isKeysetPagination()) {
+                    //Only first and next are known without counting or scanning the previous rows
                     StringBuilder sb = new StringBuilder();
-                    if(currentPage > 0) {
-                        sb.append("<").append(getLinkToPage(0)).append(">; rel=\"first\", ");
-                        sb.append("<").append(getLinkToPage(currentPage - 1)).append(">; rel=\"prev\"");
+                    if(cursor != null || (firstResult != null && firstResult > 0)) {
+                        sb.append("<").append(getLinkToPage(0)).append(">; rel=\"first\"");
                     }
-                    if(currentPage != lastPage) {
-                        if(currentPage > 0) {
+                    if(nextCursor != null) {
+                        if(sb.length() > 0) {
                             sb.append(", ");
                         }
-                        sb.append("<").append(getLinkToPage(currentPage + 1)).append(">; rel=\"next\", ");
-                        sb.append("<").append(getLinkToPage(lastPage)).append(">; rel=\"last\"");
+                        sb.append("<").append(getLinkToCursor(nextCursor)).append(">; rel=\"next\"");
+                    }
+                    if(sb.length() > 0) {
+                        response.setHeader("Link", sb.toString());
+                    }
+                } else if(rowsPerPage != null) {
+                    int currentPage = getCurrentPage(rowsPerPage);
+                    int lastPage = getLastPage(rowsPerPage, totalRecords);
+                    List<String> links = new ArrayList<String>();
+                    if(currentPage > 0) {
+                        links.add("<" + getLinkToPage(0) + ">; rel=\"first\"");
+                        links.add("<" + getLinkToPage(currentPage - 1) + ">; rel=\"prev\"");
+                    }
+                    if(currentPage < lastPage) {
+                        links.add("<" + getLinkToPage(currentPage + 1) + ">; rel=\"next\"");
+                        if(isTotalSearchRecordsExact(totalRecords)) {
+                            links.add("<" + getLinkToPage(lastPage) + ">; rel=\"last\"");
+                        }
+                    }
+                    if(!links.isEmpty()) {
+                        response.setHeader("Link", StringUtils.join(links, ", "));
                     }
-                    response.setHeader("Link", sb.toString());
                 }
             }
         };
@@ -432,6 +480,56 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
      */
     public abstract long getTotalSearchRecords();
 
+    /**
+     * Returns whether the value of {@link #getTotalSearchRecords()} is an estimate rather than an exact count.
+     * @return false; subclasses may override.
+     */
+    public boolean isTotalSearchRecordsEstimated() {
+        return false;
+    }
+
+    public boolean isTotalSearchRecordsExact(long totalRecords) {
+        return totalRecords >= 0 && !isTotalSearchRecordsEstimated();
+    }
+
+    public int getCurrentPage(int rowsPerPage) {
+        return (firstResult != null ? firstResult : 0) / rowsPerPage;
+    }
+
+    /**
+     * Computes the index of the last page of search results. If the total number of records is estimated or
+     * unknown (negative), only the existence of a next page can be trusted: it is assumed to exist if the current
+     * page is full.
+     * @param rowsPerPage the size of a page.
+     * @param totalRecords the total number of records, as returned by {@link #getTotalSearchRecords()}.
+     * @return the index of the last page (0 if there's only one page).
+     */
+    public int getLastPage(int rowsPerPage, long totalRecords) {
+        int currentPage = getCurrentPage(rowsPerPage);
+        boolean currentPageFull = objects != null && objects.size() >= rowsPerPage;
+        if(totalRecords < 0) {
+            return currentPageFull ? currentPage + 1 : currentPage;
+        }
+        int lastPage = (int) (totalRecords / rowsPerPage);
+        if(totalRecords % rowsPerPage == 0) {
+            lastPage--;
+        }
+        if(isTotalSearchRecordsEstimated()) {
+            lastPage = currentPageFull ? Math.max(lastPage, currentPage + 1) : currentPage;
+        }
+        return lastPage;
+    }
+
+    /**
+     * Returns whether search results are paginated with keyset pagination, i.e. with a cursor rather than with
+     * an offset. Implementations that support it must honor the <code>cursor</code> parameter in
+     * {@link #loadObjects()} and set {@link #nextCursor} accordingly.
+     * @return false; subclasses may override.
+     */
+    public boolean isKeysetPagination() {
+        return false;
+    }
+
     @Button(list = "crud-search-form", key = "reset.search", order = 2, type = Button.TYPE_DEFAULT, icon = Button.ICON_RELOAD )
     public Resolution resetSearch() {
         //Not really used. Search is AJAX these days.
@@ -442,6 +540,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     // Read
     //**************************************************************************
 
+    @ReadOnly
     public Resolution read() {
         if(!crudConfiguration.isLargeResultSet()) {
             setupSearchForm(); // serve per la navigazione del result set
@@ -467,6 +566,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
         }
     }
 
+    @ReadOnly
     public Resolution jsonReadData() throws JSONException {
         if(object == null) {
             throw new IllegalStateException("Object not loaded. Are you including the primary key in the URL?");
@@ -721,26 +821,36 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     @RequiresPermissions(permissions = PERMISSION_EDIT)
     public Resolution bulkUpdate() {
         int updated = 0;
+        int committed = 0;
         setupForm(Mode.BULK_EDIT);
         disableBlobFields();
         form.readFromRequest(context.getRequest());
         if (form.validate()) {
-            for (String current : selection) {
-                loadObject(current.split("/"));
-                editSetup(object);
-                writeFormToObject();
-                if(editValidate(object)) {
-                    doUpdate(object);
-                    editPostProcess(object);
-                    updated++;
-                }
-            }
+            List<Serializable> pkObjects = getSelectedPrimaryKeys();
             try {
-                commitTransaction();
+                for(List<Serializable> chunk : Lists.partition(pkObjects, getBulkChunkSize(pkObjects.size()))) {
+                    for(T current : loadObjectsByPrimaryKey(chunk)) {
+                        object = current;
+                        editSetup(object);
+                        writeFormToObject();
+                        if(editValidate(object)) {
+                            doUpdate(object);
+                            editPostProcess(object);
+                            updated++;
+                        }
+                    }
+                    commitBulkChunk();
+                    committed = updated;
+                }
             } catch (Throwable e) {
                 String rootCauseMessage = ExceptionUtils.getRootCauseMessage(e);
                 logger.warn(rootCauseMessage, e);
                 SessionMessages.addErrorMessage(rootCauseMessage);
+                if(committed > 0) {
+                    //Earlier chunks have been committed and can't be rolled back
+                    SessionMessages.addWarningMessage(ElementsThreadLocals.getText(
+                            "bulk.update.partially.committed", committed, pkObjects.size()));
+                }
                 return getBulkEditView();
             }
             SessionMessages.addInfoMessage(
@@ -788,32 +898,62 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
             SessionMessages.addWarningMessage(ElementsThreadLocals.getText("no.object.was.selected"));
             return new RedirectResolution(appendSearchStringParamIfNecessary(context.getActionPath())); //TODO why is this different from bulkEdit?
         }
-        List<T> objects = new ArrayList<T>(selection.length);
-        for (String current : selection) {
-            String[] pkArr = current.split("/");
-            Serializable pkObject = pkHelper.getPrimaryKey(pkArr);
-            T obj = loadObjectByPrimaryKey(pkObject);
-            if(deleteValidate(obj)) {
-                doDelete(obj);
-                deletePostProcess(obj);
-                objects.add(obj);
-                deleted++;
-            }
-        }
+        List<Serializable> pkObjects = getSelectedPrimaryKeys();
         try {
-            commitTransaction();
-            for(T obj : objects) {
-                deleteBlobs(obj);
+            for(List<Serializable> chunk : Lists.partition(pkObjects, getBulkChunkSize(pkObjects.size()))) {
+                List<T> deletedObjects = new ArrayList<T>(chunk.size());
+                for(T obj : loadObjectsByPrimaryKey(chunk)) {
+                    if(deleteValidate(obj)) {
+                        doDelete(obj);
+                        deletePostProcess(obj);
+                        deletedObjects.add(obj);
+                    }
+                }
+                commitBulkChunk();
+                deleted += deletedObjects.size();
+                for(T obj : deletedObjects) {
+                    deleteBlobs(obj);
+                }
             }
             SessionMessages.addInfoMessage(ElementsThreadLocals.getText("_.objects.deleted.successfully", deleted));
         } catch (Exception e) {
             logger.warn(ExceptionUtils.getRootCauseMessage(e), e);
             SessionMessages.addErrorMessage(ExceptionUtils.getRootCauseMessage(e));
+            if(deleted > 0) {
+                //Earlier chunks have been committed and can't be rolled back
+                SessionMessages.addWarningMessage(ElementsThreadLocals.getText(
+                        "bulk.delete.partially.committed", deleted, pkObjects.size()));
+            }
         }
 
         return getSuccessfulDeleteView();
     }
 
+    /**
+     * Returns the primary keys of the objects selected for a bulk operation.
+     */
+    protected List<Serializable> getSelectedPrimaryKeys() {
+        List<Serializable> pkObjects = new ArrayList<Serializable>(selection.length);
+        for (String current : selection) {
+            pkObjects.add(pkHelper.getPrimaryKey(current.split("/")));
+        }
+        return pkObjects;
+    }
+
+    /**
+     * Returns the number of objects that bulk operations process (and commit) together. Unless the
+     * configuration says otherwise, all the selected objects are committed in a single transaction.
+     * @param total the number of selected objects.
+     */
+    protected int getBulkChunkSize(int total) {
+        Integer bulkCommitSize = crudConfiguration.getBulkCommitSize();
+        if(bulkCommitSize != null && bulkCommitSize > 0) {
+            return bulkCommitSize;
+        } else {
+            return Math.max(total, 1);
+        }
+    }
+
     //**************************************************************************
     // Hooks/scripting
     //**************************************************************************
@@ -851,6 +991,14 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
      */
     protected void commitTransaction() {}
 
+    /**
+     * Commits a chunk of objects processed by a bulk operation, so that the next chunk can be processed.
+     * The default implementation simply calls {@link #commitTransaction()}.
+     */
+    protected void commitBulkChunk() {
+        commitTransaction();
+    }
+
     public boolean isEditEnabled() {
         return true;
     }
@@ -1363,6 +1511,22 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
         return urlBuilder.toString();
     }
 
+    public String getLinkToCursor(String cursor) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("sortProperty", getSortProperty());
+        parameters.put("sortDirection", getSortDirection());
+        parameters.put("cursor", cursor);
+        parameters.put("maxResults", getCrudConfiguration().getRowsPerPage());
+        if(!PageActionLogic.isEmbedded(this)) {
+            parameters.put(AbstractCrudAction.SEARCH_STRING_PARAM, getSearchString());
+        }
+
+        UrlBuilder urlBuilder =
+                new UrlBuilder(Locale.getDefault(), Util.getAbsoluteUrl(context.getActionPath()), false)
+                        .addParameters(parameters);
+        return urlBuilder.toString();
+    }
+
     protected TableForm buildTableForm(TableFormBuilder tableFormBuilder) {
         TableForm tableForm = tableFormBuilder.build();
         tableForm.setKeyGenerator(pkHelper.createPkGenerator());
@@ -1594,12 +1758,14 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     }
 
     @ControlsCache
+    @ReadOnly
     public Resolution downloadBlob() throws IOException, NoSuchFieldException {
         return downloadBlob(propertyName);
     }
 
     @GET
     @Path(":blob/{propertyName}")
+    @ReadOnly
     public Resolution downloadBlob(@PathParam("propertyName") String propertyName) throws IOException, NoSuchFieldException {
         if(object == null) {
             return new ErrorResolution(Response.Status.BAD_REQUEST.getStatusCode(), "Object can not be null (this method can only be called with /objectKey)");
@@ -2021,18 +2187,22 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     // Selection providers
     //**************************************************************************
 
+    @ReadOnly
     public Resolution jsonSelectFieldOptions() {
         return jsonOptions(relName, prefix, true);
     }
 
+    @ReadOnly
     public Resolution jsonSelectFieldSearchOptions() {
         return jsonOptions(relName, searchPrefix, true);
     }
 
+    @ReadOnly
     public Resolution jsonAutocompleteOptions() {
         return jsonOptions(relName, prefix, false);
     }
 
+    @ReadOnly
     public Resolution jsonAutocompleteSearchOptions() {
         return jsonOptions(relName, searchPrefix, false);
     }
@@ -2051,6 +2221,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     @GET
     @Path(":selectionProvider/{selectionProviderName}")
     @Produces(MediaType.APPLICATION_JSON)
+    @ReadOnly
     public Resolution jsonOptions(
             @PathParam("selectionProviderName") String selectionProviderName,
             @QueryParam("prefix") String prefix,
@@ -2076,6 +2247,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     @GET
     @Path(":selectionProvider/{selectionProviderName}/{selectionProviderIndex : (\\d+)}")
     @Produces(MediaType.APPLICATION_JSON)
+    @ReadOnly
     public Resolution jsonOptions(
             @PathParam("selectionProviderName") String selectionProviderName,
             @PathParam("selectionProviderIndex") int selectionProviderIndex,
@@ -2125,6 +2297,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     @Path(":selectionProviders")
     @Produces(MediaType.APPLICATION_JSON)
     @SuppressWarnings("unchecked")
+    @ReadOnly
     public List selectionProviders() {
         List result = new ArrayList();
         // setup option providers
@@ -2304,14 +2477,29 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
      */
     @GET
     @Produces(MimeTypes.APPLICATION_JSON_UTF8)
+    @ReadOnly
     public Resolution getAsJson(
             @QueryParam("searchString") String searchString,
             @QueryParam("firstResult") Integer firstResult, @QueryParam("maxResults") Integer maxResults,
             @QueryParam("sortProperty") String sortProperty, @QueryParam("sortDirection") String sortDirection) {
+        return getAsJson(
+                searchString, firstResult, maxResults, sortProperty, sortDirection,
+                context.getRequest().getParameter("cursor"));
+    }
+
+    /**
+     * Like {@link #getAsJson(String, Integer, Integer, String, String)}, with a cursor for keyset pagination.
+     * @param cursor the cursor, see {@link #isKeysetPagination()}.
+     * @return search results (/) or single object (/pk) as JSON (streamed using a Stripes Resolution).
+     */
+    public Resolution getAsJson(
+            String searchString, Integer firstResult, Integer maxResults,
+            String sortProperty, String sortDirection, String cursor) {
         if(object == null) {
             this.searchString = searchString;
             this.firstResult = firstResult;
             this.maxResults = maxResults;
+            this.cursor = cursor;
             this.sortProperty = sortProperty;
             this.sortDirection = sortDirection;
             return jsonSearchData();
@@ -2547,6 +2735,7 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
     @Path(":classAccessor")
     @GET
     @Produces(MimeTypes.APPLICATION_JSON_UTF8)
+    @ReadOnly
     public String describeClassAccessor() {
         JSONStringer jsonStringer = new JSONStringer();
         ReflectionUtil.classAccessorToJson(getClassAccessor(), jsonStringer);
@@ -2724,6 +2913,18 @@ public abstract class AbstractCrudAction<T> extends AbstractPageAction {
         this.maxResults = maxResults;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
     public String getSortProperty() {
         return sortProperty;
     }
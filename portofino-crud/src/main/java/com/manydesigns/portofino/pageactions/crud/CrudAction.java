@@ -20,9 +20,12 @@
 
 package com.manydesigns.portofino.pageactions.crud;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.forms.FormBuilder;
 import com.manydesigns.elements.messages.SessionMessages;
+import com.manydesigns.elements.ognl.OgnlUtils;
 import com.manydesigns.elements.options.SelectionProvider;
 import com.manydesigns.elements.reflection.ClassAccessor;
 import com.manydesigns.elements.reflection.PropertyAccessor;
@@ -31,15 +34,20 @@ import com.manydesigns.portofino.database.TableCriteria;
 import com.manydesigns.portofino.di.Inject;
 import com.manydesigns.portofino.dispatcher.PageInstance;
 import com.manydesigns.portofino.logic.SelectionProviderLogic;
+import com.manydesigns.portofino.model.database.ConnectionProvider;
 import com.manydesigns.portofino.model.database.Database;
 import com.manydesigns.portofino.model.database.Table;
+import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import com.manydesigns.portofino.modules.DatabaseModule;
 import com.manydesigns.portofino.pageactions.PageActionName;
 import com.manydesigns.portofino.pageactions.annotations.ConfigurationClass;
 import com.manydesigns.portofino.pageactions.annotations.ScriptTemplate;
+import com.manydesigns.portofino.pageactions.crud.configuration.database.CountStrategy;
 import com.manydesigns.portofino.pageactions.crud.configuration.database.CrudConfiguration;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
+import com.manydesigns.portofino.reflection.ColumnAccessor;
+import com.manydesigns.portofino.reflection.CompactEntity;
 import com.manydesigns.portofino.reflection.TableAccessor;
 import com.manydesigns.portofino.security.AccessLevel;
 import com.manydesigns.portofino.security.RequiresPermissions;
@@ -47,24 +55,28 @@ import com.manydesigns.portofino.security.SupportsPermissions;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
-import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.PlainSelect;
-import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
 import net.sourceforge.stripes.action.Before;
 import net.sourceforge.stripes.action.ForwardResolution;
 import net.sourceforge.stripes.action.Resolution;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Session;
 import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.ReturningWork;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
 
 /**
  * Default AbstractCrudAction implementation. Implements a crud page over a database table, based on a HQL query.
@@ -85,7 +97,8 @@ public class CrudAction extends AbstractCrudAction<Object> {
 
     public static final String[][] CRUD_CONFIGURATION_FIELDS =
                 {{"name", "database", "query", "searchTitle", "createTitle", "readTitle", "editTitle", "variable",
-                  "largeResultSet", "rowsPerPage", "columns"}};
+                  "largeResultSet", "rowsPerPage", "keysetPagination", "countStrategy", "countCacheTimeToLive",
+                  "columns"}};
 
     public Table baseTable;
 
@@ -99,6 +112,23 @@ public class CrudAction extends AbstractCrudAction<Object> {
     public Persistence persistence;
 
     protected long totalSearchRecords = -1;
+    protected boolean totalSearchRecordsCalculated = false;
+    protected boolean totalSearchRecordsEstimated = false;
+    /**
+     * Whether this crud has saved, updated or deleted objects whose counts must be invalidated upon commit.
+     */
+    protected boolean countCacheInvalidationPending = false;
+
+    /**
+     * Counts cached with the {@link CountStrategy#CACHED} strategy, shared by all the cruds in the application.
+     */
+    protected static final Cache<CountCacheKey, CachedCount> countCache =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    public static final int DEFAULT_COUNT_CACHE_TIME_TO_LIVE = 60;
+
+    protected static final String CURSOR_ENCODING = "UTF-8";
+    protected static final String TIMESTAMP_NANOS_SEPARATOR = ":";
 
     //**************************************************************************
     // Logging
@@ -109,12 +139,23 @@ public class CrudAction extends AbstractCrudAction<Object> {
 
     @Override
     public long getTotalSearchRecords() {
-        if(totalSearchRecords < 0) {
+        if(!totalSearchRecordsCalculated) {
             calculateTotalSearchRecords();
+            totalSearchRecordsCalculated = true;
         }
         return totalSearchRecords;
     }
 
+    @Override
+    public boolean isTotalSearchRecordsEstimated() {
+        return totalSearchRecordsEstimated;
+    }
+
+    /**
+     * Computes the number of records matching the current search, according to the configured
+     * {@link CountStrategy}.
+     * @return the number of records, or -1 if it is unknown.
+     */
     protected long calculateTotalSearchRecords() {
         // calculate totalRecords
         TableCriteria criteria = new TableCriteria(baseTable);
@@ -124,57 +165,212 @@ public class CrudAction extends AbstractCrudAction<Object> {
         QueryStringWithParameters query =
                 QueryUtils.mergeQuery(getBaseQuery(), criteria, this);
 
-        String queryString = query.getQueryString();
+        totalSearchRecordsEstimated = false;
+        CountStrategy countStrategy = getCrudConfiguration().getActualCountStrategy();
+        if(countStrategy == CountStrategy.NONE) {
+            return totalSearchRecords = -1;
+        }
+        if(countStrategy == CountStrategy.ESTIMATED) {
+            Long estimate = estimateTotalSearchRecords(query.getQueryString());
+            if(estimate != null) {
+                totalSearchRecordsEstimated = true;
+                return totalSearchRecords = estimate;
+            }
+        }
         String totalRecordsQueryString;
         try {
-            totalRecordsQueryString = generateCountQuery(queryString);
+            totalRecordsQueryString = generateCountQuery(query.getQueryString());
         } catch (JSQLParserException e) {
             throw new Error(e);
         }
-        //TODO gestire count non disponibile (totalRecordsQueryString == null)
-        List<Object> result = QueryUtils.runHqlQuery
-                (session, totalRecordsQueryString,
-                        query.getParameters());
-        return totalSearchRecords = ((Number) result.get(0)).longValue();
+        if(totalRecordsQueryString == null) {
+            logger.warn("Count query not available, the total number of records is unknown");
+            return totalSearchRecords = -1;
+        }
+        if(countStrategy == CountStrategy.EXACT) {
+            return totalSearchRecords = runCountQuery(totalRecordsQueryString, query.getParameters());
+        }
+
+        CountCacheKey key = new CountCacheKey(
+                getCrudConfiguration().getDatabase(), baseTable.getActualEntityName(),
+                totalRecordsQueryString, query.getParameters());
+        Integer timeToLive = getCrudConfiguration().getCountCacheTimeToLive();
+        long maxAge = 1000L * (timeToLive != null ? timeToLive : DEFAULT_COUNT_CACHE_TIME_TO_LIVE);
+        CachedCount cachedCount = countCache.getIfPresent(key);
+        if(cachedCount == null || System.currentTimeMillis() - cachedCount.timestamp > maxAge) {
+            long count = runCountQuery(totalRecordsQueryString, query.getParameters());
+            cachedCount = new CachedCount(count, System.currentTimeMillis());
+            countCache.put(key, cachedCount);
+        } else {
+            logger.debug("Using cached count for {}", totalRecordsQueryString);
+        }
+        return totalSearchRecords = cachedCount.count;
     }
 
-    protected String generateCountQuery(String queryString) throws JSQLParserException {
-        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+    protected long runCountQuery(String countQueryString, Object[] parameters) {
+        List<Object> result = QueryUtils.runHqlQuery(session, countQueryString, parameters);
+        return ((Number) result.get(0)).longValue();
+    }
+
+    /**
+     * Estimates the number of records from the statistics of the database. This is only possible if the search
+     * is not filtered and only selects from the base table.
+     * @param queryString the search query.
+     * @return the estimated number of records, or null if an estimate is not available.
+     */
+    protected Long estimateTotalSearchRecords(String queryString) {
         try {
-            PlainSelect plainSelect =
-                (PlainSelect) ((Select) parserManager.parse(new StringReader(queryString))).getSelectBody();
-            logger.debug("Query string {} contains select");
-            List items = plainSelect.getSelectItems();
-            if(items.size() != 1) {
-                logger.error("I don't know how to generate a count query for {}", queryString);
+            PlainSelect plainSelect = QueryUtils.parseQuery(queryString);
+            if(plainSelect.getWhere() != null || plainSelect.getDistinct() != null ||
+               (plainSelect.getJoins() != null && !plainSelect.getJoins().isEmpty()) ||
+               plainSelect.getGroupByColumnReferences() != null) {
+                logger.debug("Query {} is filtered, cannot estimate the number of records", queryString);
                 return null;
             }
-            SelectExpressionItem item = (SelectExpressionItem) items.get(0);
-            Function function = new Function();
-            function.setName("count");
-            function.setParameters(new ExpressionList(Arrays.asList(item.getExpression())));
-            item.setExpression(function);
-            plainSelect.setOrderByElements(null);
-            return plainSelect.toString();
-        } catch(Exception e) {
-            logger.debug("Query string {} does not contain select", e);
-            queryString = "SELECT count(*) " + queryString;
-            PlainSelect plainSelect =
-                (PlainSelect) ((Select) parserManager.parse(new StringReader(queryString))).getSelectBody();
+        } catch (JSQLParserException e) {
+            logger.debug("Could not parse query " + queryString, e);
+            return null;
+        }
+        ConnectionProvider connectionProvider =
+                persistence.getConnectionProvider(getCrudConfiguration().getDatabase());
+        if(!(connectionProvider.getDatabasePlatform() instanceof AbstractDatabasePlatform)) {
+            return null;
+        }
+        final AbstractDatabasePlatform databasePlatform =
+                (AbstractDatabasePlatform) connectionProvider.getDatabasePlatform();
+        try {
+            return session.doReturningWork(new ReturningWork<Long>() {
+                @Override
+                public Long execute(Connection connection) throws SQLException {
+                    return databasePlatform.getEstimatedRowCount(connection, baseTable);
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("Could not estimate the number of records of " + baseTable.getQualifiedName(), e);
+            return null;
+        }
+    }
+
+    protected String generateCountQuery(String queryString) throws JSQLParserException {
+        if(!queryString.trim().toLowerCase().startsWith("select")) {
+            logger.debug("Query string {} does not contain select", queryString);
+            PlainSelect plainSelect = QueryUtils.parseQuery("SELECT count(*) " + queryString);
             plainSelect.setOrderByElements(null);
             return plainSelect.toString();
         }
+        //The parsed query is shared with other threads, its select items must be replaced, not modified
+        PlainSelect plainSelect = QueryUtils.parseQuery(queryString);
+        logger.debug("Query string {} contains select", queryString);
+        List items = plainSelect.getSelectItems();
+        if(items.size() != 1) {
+            logger.error("I don't know how to generate a count query for {}", queryString);
+            return null;
+        }
+        SelectExpressionItem item = (SelectExpressionItem) items.get(0);
+        Function function = new Function();
+        function.setName("count");
+        function.setParameters(new ExpressionList(Arrays.asList(item.getExpression())));
+        SelectExpressionItem countItem = new SelectExpressionItem();
+        countItem.setExpression(function);
+        plainSelect.setSelectItems(Collections.<SelectItem>singletonList(countItem));
+        plainSelect.setOrderByElements(null);
+        return plainSelect.toString();
+    }
+
+    /**
+     * Removes the cached counts of the records of the base table, so that the next search sees the effects of
+     * creations and deletions made through this crud.
+     */
+    protected void invalidateCountCache() {
+        String databaseName = getCrudConfiguration().getDatabase();
+        String entityName = baseTable.getActualEntityName();
+        List<CountCacheKey> keysToInvalidate = new ArrayList<CountCacheKey>();
+        for(CountCacheKey key : countCache.asMap().keySet()) {
+            if(key.database.equals(databaseName) && key.entityName.equals(entityName)) {
+                keysToInvalidate.add(key);
+            }
+        }
+        countCache.invalidateAll(keysToInvalidate);
+    }
+
+    protected static final class CountCacheKey {
+        public final String database;
+        public final String entityName;
+        public final String queryString;
+        public final List<Object> parameters;
+
+        public CountCacheKey(String database, String entityName, String queryString, Object[] parameters) {
+            this.database = database;
+            this.entityName = entityName;
+            this.queryString = queryString;
+            this.parameters = Arrays.asList(parameters);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            CountCacheKey that = (CountCacheKey) o;
+
+            if (!database.equals(that.database)) return false;
+            if (!entityName.equals(that.entityName)) return false;
+            if (!queryString.equals(that.queryString)) return false;
+            if (!parameters.equals(that.parameters)) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = database.hashCode();
+            result = 31 * result + entityName.hashCode();
+            result = 31 * result + queryString.hashCode();
+            result = 31 * result + parameters.hashCode();
+            return result;
+        }
+    }
+
+    protected static final class CachedCount {
+        public final long count;
+        public final long timestamp;
+
+        public CachedCount(long count, long timestamp) {
+            this.count = count;
+            this.timestamp = timestamp;
+        }
     }
 
     @Override
     protected void commitTransaction() {
         session.getTransaction().commit();
+        if(countCacheInvalidationPending) {
+            countCacheInvalidationPending = false;
+            invalidateCountCache();
+        }
+    }
+
+    /**
+     * Commits the chunk, then clears the session, so that the objects of the committed chunk can be garbage
+     * collected, and begins a new transaction for the next chunk.
+     */
+    @Override
+    protected void commitBulkChunk() {
+        commitTransaction();
+        session.clear();
+        session.beginTransaction();
     }
 
     @Override
     protected void doSave(Object object) {
         try {
-            session.save(baseTable.getActualEntityName(), object);
+            Object entity = toEntity(object);
+            session.save(baseTable.getActualEntityName(), entity);
+            if(entity != object) {
+                //Copy back the generated identifier
+                ((Map) object).putAll((Map) entity);
+            }
+            countCacheInvalidationPending = true;
         } catch(ConstraintViolationException e) {
             logger.warn("Constraint violation in save", e);
             throw new RuntimeException(ElementsThreadLocals.getText("save.failed.because.constraint.violated"));
@@ -184,16 +380,33 @@ public class CrudAction extends AbstractCrudAction<Object> {
     @Override
     protected void doUpdate(Object object) {
         try {
-            session.update(baseTable.getActualEntityName(), object);
+            session.update(baseTable.getActualEntityName(), toEntity(object));
+            countCacheInvalidationPending = true;
         } catch(ConstraintViolationException e) {
             logger.warn("Constraint violation in update", e);
             throw new RuntimeException(ElementsThreadLocals.getText("save.failed.because.constraint.violated"));
         }
     }
 
+    /**
+     * Converts an object built as a plain map (e.g. by a script) into an instance of the generated compact entity
+     * class of the base table, if it has one, since Hibernate does not accept maps for such tables.
+     * @param object the object.
+     * @return the object to pass to Hibernate.
+     */
+    protected Object toEntity(Object object) {
+        Class entityClass = baseTable.getActualEntityClass();
+        if(entityClass != null && CompactEntity.class.isAssignableFrom(entityClass) &&
+           object instanceof Map && !entityClass.isInstance(object)) {
+            return CompactEntity.fromMap((Class<? extends CompactEntity>) entityClass, (Map) object);
+        }
+        return object;
+    }
+
     @Override
     protected void doDelete(Object object) {
-        session.delete(baseTable.getActualEntityName(), object);
+        session.delete(baseTable.getActualEntityName(), toEntity(object));
+        countCacheInvalidationPending = true;
     }
 
     //**************************************************************************
@@ -261,7 +474,28 @@ public class CrudAction extends AbstractCrudAction<Object> {
             if(searchForm != null) {
                 searchForm.configureCriteria(criteria);
             }
-            if(!StringUtils.isBlank(sortProperty) && !StringUtils.isBlank(sortDirection)) {
+            PropertyAccessor[] keysetProperties = getKeysetProperties();
+            if(keysetProperties != null) {
+                String direction =
+                        TableCriteria.OrderBy.DESC.equals(sortDirection) ?
+                                TableCriteria.OrderBy.DESC : TableCriteria.OrderBy.ASC;
+                criteria.orderBy(keysetProperties[0], direction);
+                for(int i = 1; i < keysetProperties.length; i++) {
+                    criteria.thenOrderBy(keysetProperties[i], direction);
+                }
+                if(!StringUtils.isBlank(cursor)) {
+                    Object[] cursorValues;
+                    try {
+                        cursorValues = parseCursor(cursor, keysetProperties);
+                    } catch (IllegalArgumentException e) {
+                        objects = new ArrayList<Object>();
+                        nextCursor = null;
+                        logger.warn("Invalid cursor: " + cursor, e);
+                        return;
+                    }
+                    criteria.after(keysetProperties, cursorValues, direction);
+                }
+            } else if(!StringUtils.isBlank(sortProperty) && !StringUtils.isBlank(sortDirection)) {
                 try {
                     PropertyAccessor orderByProperty = classAccessor.getProperty(sortProperty);
                     criteria.orderBy(orderByProperty, sortDirection);
@@ -269,7 +503,13 @@ public class CrudAction extends AbstractCrudAction<Object> {
                     logger.error("Can't order by " + sortProperty + ", property accessor not found", e);
                 }
             }
+            Integer firstResult = keysetProperties != null && !StringUtils.isBlank(cursor) ? null : this.firstResult;
             objects = QueryUtils.getObjects(session, getBaseQuery(), criteria, this, firstResult, maxResults);
+            if(keysetProperties != null && maxResults != null && objects.size() >= maxResults) {
+                nextCursor = formatCursor(objects.get(objects.size() - 1), keysetProperties);
+            } else {
+                nextCursor = null;
+            }
         } catch (ClassCastException e) {
             objects=new ArrayList<Object>();
             logger.warn("Incorrect Field Type", e);
@@ -277,6 +517,111 @@ public class CrudAction extends AbstractCrudAction<Object> {
         }
     }
 
+    //**************************************************************************
+    // Keyset pagination
+    //**************************************************************************
+
+    @Override
+    public boolean isKeysetPagination() {
+        return getKeysetProperties() != null;
+    }
+
+    /**
+     * Computes the properties that define the order of the results when using keyset pagination: the sort
+     * property, if any, followed by the primary key, which guarantees that every row has a distinct position.
+     * @return the properties, or null if keyset pagination is disabled or cannot be used with the current
+     * sort property (e.g. because it is nullable, and thus cannot be compared).
+     */
+    protected PropertyAccessor[] getKeysetProperties() {
+        if(!getCrudConfiguration().isKeysetPagination() || classAccessor == null) {
+            return null;
+        }
+        PropertyAccessor[] keyProperties = classAccessor.getKeyProperties();
+        List<PropertyAccessor> properties = new ArrayList<PropertyAccessor>();
+        if(!StringUtils.isBlank(sortProperty)) {
+            PropertyAccessor sortAccessor;
+            try {
+                sortAccessor = classAccessor.getProperty(sortProperty);
+            } catch (NoSuchFieldException e) {
+                logger.error("Can't order by " + sortProperty + ", property accessor not found", e);
+                return null;
+            }
+            if(!Arrays.asList(keyProperties).contains(sortAccessor)) {
+                if(!(sortAccessor instanceof ColumnAccessor) ||
+                   ((ColumnAccessor) sortAccessor).getColumn().isNullable()) {
+                    logger.debug("Sort property {} is nullable, falling back to offset pagination", sortProperty);
+                    return null;
+                }
+                properties.add(sortAccessor);
+            }
+        }
+        properties.addAll(Arrays.asList(keyProperties));
+        return properties.toArray(new PropertyAccessor[properties.size()]);
+    }
+
+    /**
+     * Encodes the position of an object in the result set as a cursor string.
+     * @param object the object, usually the last one in a page.
+     * @param keysetProperties the properties defining the order.
+     * @return the cursor.
+     */
+    protected String formatCursor(Object object, PropertyAccessor[] keysetProperties) {
+        String[] values = new String[keysetProperties.length];
+        try {
+            for(int i = 0; i < keysetProperties.length; i++) {
+                Object value = keysetProperties[i].get(object);
+                if(value instanceof Timestamp) {
+                    //Keep the nanoseconds, or rows in the same millisecond would be repeated or skipped
+                    Timestamp timestamp = (Timestamp) value;
+                    value = timestamp.getTime() + TIMESTAMP_NANOS_SEPARATOR + timestamp.getNanos();
+                } else if(value instanceof Date) {
+                    value = ((Date) value).getTime();
+                } else if(value instanceof DateTime) {
+                    value = ((DateTime) value).getMillis();
+                }
+                values[i] = URLEncoder.encode(OgnlUtils.convertValueToString(value), CURSOR_ENCODING);
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new Error(e);
+        }
+        return StringUtils.join(values, ",");
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #formatCursor(Object, PropertyAccessor[])}.
+     * @param cursor the cursor.
+     * @param keysetProperties the properties defining the order.
+     * @return the values of the properties for the object identified by the cursor.
+     * @throws IllegalArgumentException if the cursor is not valid.
+     */
+    protected Object[] parseCursor(String cursor, PropertyAccessor[] keysetProperties) {
+        String[] strings = StringUtils.splitPreserveAllTokens(cursor, ',');
+        if(strings.length != keysetProperties.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + keysetProperties.length + " values in cursor, got " + strings.length);
+        }
+        Object[] values = new Object[strings.length];
+        try {
+            for(int i = 0; i < strings.length; i++) {
+                String string = URLDecoder.decode(strings[i], CURSOR_ENCODING);
+                Class<?> type = keysetProperties[i].getType();
+                int nanosIndex = string.indexOf(TIMESTAMP_NANOS_SEPARATOR);
+                if(nanosIndex >= 0 && type.isAssignableFrom(Timestamp.class)) {
+                    Timestamp timestamp = new Timestamp(Long.parseLong(string.substring(0, nanosIndex)));
+                    timestamp.setNanos(Integer.parseInt(string.substring(nanosIndex + 1)));
+                    values[i] = timestamp;
+                } else if(Date.class.isAssignableFrom(type) || DateTime.class.isAssignableFrom(type)) {
+                    values[i] = OgnlUtils.convertValue(new Date(Long.parseLong(string)), type);
+                } else {
+                    values[i] = OgnlUtils.convertValue(string, type);
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new Error(e);
+        }
+        return values;
+    }
+
     /**
      * Computes the query underlying the CRUD action. By default, it returns configuration.query i.e. the HQL query
      * stored in configuration.xml. However, you can override this method to insert your own logic, for example to
@@ -295,6 +640,14 @@ public class CrudAction extends AbstractCrudAction<Object> {
                 getBaseQuery(), this);
     }
 
+    @Override
+    protected List<Object> loadObjectsByPrimaryKey(List<Serializable> pkObjects) {
+        return QueryUtils.getObjectsByPk(
+                persistence,
+                baseTable, pkObjects,
+                getBaseQuery(), this);
+    }
+
     //**************************************************************************
     // Configuration
     //**************************************************************************
@@ -314,7 +314,8 @@ public class ModelSelectionProviderSupport implements SelectionProviderSupport {
                 Object[] parameters = queryWithParameters.getParameters();
                 logger.debug("Query not in cache: {}", queryString);
                 try {
-                    objects = QueryUtils.runHqlQuery(session, queryString, parameters);
+                    objects = QueryUtils.runHqlQuery(
+                            session, queryString, parameters, null, null, Boolean.TRUE.equals(current.getCacheable()));
                 } catch (Exception e) {
                     logger.error("Exception in populating selection provider " + name, e);
                     return null;
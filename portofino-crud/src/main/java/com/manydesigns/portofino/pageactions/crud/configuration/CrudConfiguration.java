@@ -40,6 +40,7 @@ public class CrudConfiguration implements PageActionConfiguration, Configuration
     protected boolean useLocalOrder = false;
     protected Integer rowsPerPage;
     protected Integer columns = 1;
+    protected Integer bulkCommitSize;
 
     public CrudConfiguration() {
         properties = new ArrayList<CrudProperty>();
@@ -153,6 +154,19 @@ public class CrudConfiguration implements PageActionConfiguration, Configuration
         this.columns = columns;
     }
 
+    /**
+     * The number of objects after which bulk operations commit their changes.
+     * @return the commit size, or null to commit all the selected objects at once.
+     */
+    @XmlAttribute(required = false)
+    public Integer getBulkCommitSize() {
+        return bulkCommitSize;
+    }
+
+    public void setBulkCommitSize(Integer bulkCommitSize) {
+        this.bulkCommitSize = bulkCommitSize;
+    }
+
     @XmlAttribute(required = false)
     public boolean isUseLocalOrder() {
         return useLocalOrder;
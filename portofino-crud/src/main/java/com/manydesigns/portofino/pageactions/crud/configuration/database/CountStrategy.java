@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.pageactions.crud.configuration.database;
+
+/**
+ * How a crud computes the total number of records matching a search.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public enum CountStrategy {
+    /**
+     * Runs a count query for every search.
+     */
+    EXACT,
+    /**
+     * Runs a count query and reuses its result for identical searches, until it expires or the table is modified
+     * through the crud.
+     */
+    CACHED,
+    /**
+     * Uses the row count estimated by the database from its statistics, when the search is not filtered; falls
+     * back to {@link #CACHED} otherwise.
+     */
+    ESTIMATED,
+    /**
+     * Does not count records. The total is unknown, and pagination only knows whether there is a next page.
+     */
+    NONE
+}
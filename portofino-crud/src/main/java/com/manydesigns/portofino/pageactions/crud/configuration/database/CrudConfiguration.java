@@ -59,6 +59,9 @@ public class CrudConfiguration extends com.manydesigns.portofino.pageactions.cru
 
     protected String database;
     protected String query;
+    protected boolean keysetPagination;
+    protected CountStrategy countStrategy;
+    protected Integer countCacheTimeToLive;
 
     @Inject(DatabaseModule.PERSISTENCE)
     public Persistence persistence;
@@ -144,6 +147,48 @@ public class CrudConfiguration extends com.manydesigns.portofino.pageactions.cru
         this.query = query;
     }
 
+    /**
+     * Whether to paginate search results using keyset (seek) pagination, i.e. by asking for the rows that follow
+     * the last one of the previous page, rather than by offset. With large tables, this makes every page as fast
+     * as the first one.
+     * @return true if keyset pagination is enabled.
+     */
+    @XmlAttribute(required = false)
+    public boolean isKeysetPagination() {
+        return keysetPagination;
+    }
+
+    public void setKeysetPagination(boolean keysetPagination) {
+        this.keysetPagination = keysetPagination;
+    }
+
+    @XmlAttribute(required = false)
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    public void setCountStrategy(CountStrategy countStrategy) {
+        this.countStrategy = countStrategy;
+    }
+
+    public CountStrategy getActualCountStrategy() {
+        return countStrategy != null ? countStrategy : CountStrategy.EXACT;
+    }
+
+    /**
+     * The time, in seconds, after which a cached count expires (with the {@link CountStrategy#CACHED} and
+     * {@link CountStrategy#ESTIMATED} strategies).
+     * @return the time to live, or null for the default.
+     */
+    @XmlAttribute(required = false)
+    public Integer getCountCacheTimeToLive() {
+        return countCacheTimeToLive;
+    }
+
+    public void setCountCacheTimeToLive(Integer countCacheTimeToLive) {
+        this.countCacheTimeToLive = countCacheTimeToLive;
+    }
+
     @XmlElementWrapper(name="selectionProviders")
     @XmlElements({
           @XmlElement(name="selectionProvider",type=SelectionProviderReference.class)
@@ -21,12 +21,22 @@
     </div>
     <%
         Integer rowsPerPage = actionBean.getCrudConfiguration().getRowsPerPage();
+        if(rowsPerPage != null && actionBean.isKeysetPagination()) {
+            //Keyset pagination: only first and next are known, without counting the records
+            if(!isFirstKeysetPage(actionBean) || actionBean.getNextCursor() != null) { %>
+            <ul class="pagination pagination-sm">
+                <% writeKeysetPaginator(out, actionBean); %>
+            </ul>
+    <%      }
+        } else {
         long totalSearchRecords = rowsPerPage != null ? actionBean.getTotalSearchRecords() : 0;
-        if(rowsPerPage != null && totalSearchRecords > rowsPerPage) { %>
+        if(rowsPerPage != null &&
+           (actionBean.getLastPage(rowsPerPage, totalSearchRecords) > 0 || actionBean.getCurrentPage(rowsPerPage) > 0)) { %>
             <ul class="pagination pagination-sm">
                 <% writePaginator(out, actionBean, rowsPerPage, totalSearchRecords); %>
             </ul>
-    <%  } %>
+    <%  }
+        } %>
     <input type="hidden" name="sortProperty" value="${actionBean.sortProperty}" />
     <input type="hidden" name="sortDirection" value="${actionBean.sortDirection}" />
     <input type="hidden" name="eventName" value="${actionBean.context.eventName}" />
@@ -34,13 +44,50 @@
     <div style="clear: both;"></div>
 </div>
 <%!
-    private void writePaginator(Writer out, AbstractCrudAction actionBean, int rowsPerPage, long totalSearchRecords) {
-        int firstResult = actionBean.getFirstResult() != null ? actionBean.getFirstResult() : 0;
-        int currentPage = firstResult / rowsPerPage;
-        int lastPage = (int) (totalSearchRecords / rowsPerPage);
-        if(totalSearchRecords % rowsPerPage == 0) {
-            lastPage--;
+    private boolean isFirstKeysetPage(AbstractCrudAction actionBean) {
+        return actionBean.getCursor() == null &&
+               (actionBean.getFirstResult() == null || actionBean.getFirstResult() == 0);
+    }
+
+    private void writeKeysetPaginator(Writer out, AbstractCrudAction actionBean) {
+        XhtmlBuffer buf = new XhtmlBuffer(out);
+
+        //First
+        buf.openElement("li");
+        if(isFirstKeysetPage(actionBean)) {
+            buf.addAttribute("class", "disabled");
+            buf.openElement("a");
+        } else {
+            buf.openElement("a");
+            buf.addAttribute("class", "paginator-link");
+            buf.addAttribute("href", actionBean.getLinkToPage(0));
+        }
+        buf.addAttribute("title", ElementsThreadLocals.getText("first"));
+        buf.writeNoHtmlEscape("&lt;&lt;");
+        buf.closeElement("a");
+        buf.closeElement("li");
+
+        //Next
+        buf.openElement("li");
+        String nextCursor = actionBean.getNextCursor();
+        if(nextCursor == null) {
+            buf.addAttribute("class", "disabled");
+            buf.openElement("a");
+        } else {
+            buf.openElement("a");
+            buf.addAttribute("class", "paginator-link");
+            buf.addAttribute("href", actionBean.getLinkToCursor(nextCursor));
         }
+        buf.addAttribute("title", ElementsThreadLocals.getText("next"));
+        buf.writeNoHtmlEscape("&gt;");
+        buf.closeElement("a");
+        buf.closeElement("li");
+    }
+
+    private void writePaginator(Writer out, AbstractCrudAction actionBean, int rowsPerPage, long totalSearchRecords) {
+        int currentPage = actionBean.getCurrentPage(rowsPerPage);
+        int lastPage = actionBean.getLastPage(rowsPerPage, totalSearchRecords);
+        boolean lastPageKnown = actionBean.isTotalSearchRecordsExact(totalSearchRecords);
 
         XhtmlBuffer buf = new XhtmlBuffer(out);
 
@@ -96,7 +143,9 @@
             buf.openElement("a");
             buf.addAttribute("class", "paginator-link");
             buf.addAttribute("href", actionBean.getLinkToPage(pg));
-            buf.addAttribute("title", ElementsThreadLocals.getText("page._.of._", pg + 1, lastPage + 1));
+            if(lastPageKnown) {
+                buf.addAttribute("title", ElementsThreadLocals.getText("page._.of._", pg + 1, lastPage + 1));
+            }
             buf.write("" + (pg + 1));
             buf.closeElement("a");
             buf.closeElement("li");
@@ -119,7 +168,7 @@
 
         //Last
         buf.openElement("li");
-        if(currentPage == lastPage) {
+        if(currentPage == lastPage || !lastPageKnown) {
             buf.addAttribute("class", "disabled");
             buf.openElement("a");
         } else {
@@ -127,7 +176,11 @@
             buf.addAttribute("class", "paginator-link");
             buf.addAttribute("href", actionBean.getLinkToPage(lastPage));
         }
-        buf.addAttribute("title", ElementsThreadLocals.getText("last") + " (" + (lastPage + 1) + ")");
+        if(lastPageKnown) {
+            buf.addAttribute("title", ElementsThreadLocals.getText("last") + " (" + (lastPage + 1) + ")");
+        } else {
+            buf.addAttribute("title", ElementsThreadLocals.getText("last"));
+        }
         buf.writeNoHtmlEscape("&gt;&gt;");
         buf.closeElement("a");
         buf.closeElement("li");
@@ -25,6 +25,9 @@ import com.manydesigns.elements.fields.search.TextMatchMode;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.portofino.model.database.Table;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -40,7 +43,7 @@ public class TableCriteria extends BaseCriteria {
     //**************************************************************************
 
     protected final Table table;
-
+    protected final List<OrderBy> additionalOrderBy = new ArrayList<OrderBy>();
 
     //**************************************************************************
     // Constructor
@@ -60,6 +63,72 @@ public class TableCriteria extends BaseCriteria {
         return table;
     }
 
+    /**
+     * Returns the orderings to apply after the main one (see {@link #getOrderBy()}), e.g. to break ties.
+     * @return the additional orderings, in order of application.
+     */
+    public List<OrderBy> getAdditionalOrderBy() {
+        return additionalOrderBy;
+    }
+
+    //**************************************************************************
+    // Keyset pagination
+    //**************************************************************************
+
+    /**
+     * Adds an ordering to be applied after the main one.
+     * @param accessor the property to order by.
+     * @param direction the direction, {@link OrderBy#ASC} or {@link OrderBy#DESC}.
+     * @return this criteria.
+     */
+    public TableCriteria thenOrderBy(PropertyAccessor accessor, String direction) {
+        additionalOrderBy.add(new OrderBy(accessor, direction));
+        return this;
+    }
+
+    /**
+     * Restricts the results to the rows that follow a given one, in the order defined by the given properties.
+     * This is the lexicographic comparison <code>(p1, ..., pn) &gt; (v1, ..., vn)</code> (or &lt; if the direction
+     * is descending), used to implement keyset (seek) pagination.
+     * @param accessors the properties defining the order; the last ones must identify a row uniquely.
+     * @param values the values of the properties for the last row of the previous page.
+     * @param direction the direction, {@link OrderBy#ASC} or {@link OrderBy#DESC}.
+     * @return this criteria.
+     */
+    public TableCriteria after(PropertyAccessor[] accessors, Object[] values, String direction) {
+        add(new KeysetCriterion(accessors, values, direction));
+        return this;
+    }
+
+    public static class KeysetCriterion extends AbstractCriterion {
+        protected final PropertyAccessor[] accessors;
+        protected final Object[] values;
+        protected final String direction;
+
+        public KeysetCriterion(PropertyAccessor[] accessors, Object[] values, String direction) {
+            super(accessors[0]);
+            if(accessors.length != values.length) {
+                throw new IllegalArgumentException(
+                        "Expected " + accessors.length + " values, got " + values.length);
+            }
+            this.accessors = accessors;
+            this.values = values;
+            this.direction = direction;
+        }
+
+        public PropertyAccessor[] getPropertyAccessors() {
+            return accessors;
+        }
+
+        public Object[] getValues() {
+            return values;
+        }
+
+        public boolean isDesc() {
+            return OrderBy.DESC.equals(direction);
+        }
+    }
+
     //**************************************************************************
     // Overrides to simplify type casting
     //**************************************************************************
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the Hibernate second-level cache for a table of the model. One-to-many collections are cached as well
+ * when the tables on both sides are cached.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface Cached {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final String READ_ONLY = "read-only";
+    public static final String NONSTRICT_READ_WRITE = "nonstrict-read-write";
+    public static final String READ_WRITE = "read-write";
+
+    /**
+     * The cache concurrency strategy: {@value #READ_ONLY}, {@value #NONSTRICT_READ_WRITE} or {@value #READ_WRITE}.
+     */
+    String usage() default NONSTRICT_READ_WRITE;
+
+    /**
+     * The name of the cache region. Defaults to the entity name.
+     */
+    String region() default "";
+
+    /**
+     * The time to live of cached entries, in seconds. 0 means no expiration.
+     */
+    int timeToLive() default 0;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.database.annotations.impl;
+
+import com.manydesigns.portofino.database.annotations.Cached;
+
+import java.lang.annotation.Annotation;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@SuppressWarnings({"ClassExplicitlyAnnotation"})
+public class CachedImpl implements Cached {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    private final String usage;
+    private final String region;
+    private final int timeToLive;
+
+    public CachedImpl() {
+        this(NONSTRICT_READ_WRITE);
+    }
+
+    public CachedImpl(String usage) {
+        this(usage, "");
+    }
+
+    public CachedImpl(String usage, String region) {
+        this(usage, region, 0);
+    }
+
+    public CachedImpl(String usage, String region, int timeToLive) {
+        this.usage = usage;
+        this.region = region;
+        this.timeToLive = timeToLive;
+    }
+
+    public String usage() {
+        return usage;
+    }
+
+    public String region() {
+        return region;
+    }
+
+    public int timeToLive() {
+        return timeToLive;
+    }
+
+    public Class<? extends Annotation> annotationType() {
+        return Cached.class;
+    }
+}
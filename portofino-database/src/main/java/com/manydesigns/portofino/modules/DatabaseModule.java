@@ -20,10 +20,14 @@
 
 package com.manydesigns.portofino.modules;
 
+import com.manydesigns.elements.annotations.AnnotationsManager;
+import com.manydesigns.portofino.database.annotations.Cached;
+import com.manydesigns.portofino.database.annotations.impl.CachedImpl;
 import com.manydesigns.portofino.model.database.platforms.DatabasePlatformsRegistry;
 import com.manydesigns.portofino.di.Inject;
 import com.manydesigns.portofino.di.Injections;
 import com.manydesigns.portofino.persistence.Persistence;
+import com.manydesigns.portofino.persistence.QueryUtils;
 import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,6 +72,19 @@ public class DatabaseModule implements Module {
             "com.manydesigns.portofino.modules.DatabaseModule.databasePlatformsRegistry";
     //Liquibase properties
     public static final String LIQUIBASE_ENABLED = "liquibase.enabled";
+    //Read replicas properties
+    public static final String REPLICA_MAX_LAG = "database.replica.max.lag";
+    public static final String REPLICA_CHECK_INTERVAL = "database.replica.check.interval";
+    //Startup properties
+    public static final String STARTUP_THREADS = "database.startup.threads";
+    public static final String MAPPING_CACHE_ENABLED = "database.mapping.cache.enabled";
+    //When enabled, tables without a Java class are mapped in POJO mode to generated CompactEntity classes, so code
+    //that saves plain maps with session.save(entityName, map) must convert them with CompactEntity.fromMap first
+    public static final String COMPACT_ENTITIES_ENABLED = "database.compact.entities.enabled";
+    //Hibernate properties
+    public static final String JDBC_BATCH_SIZE = "database.jdbc.batch.size";
+    //Second-level cache properties
+    public static final String CACHE_MAX_SIZE = "database.cache.max.size";
 
     //**************************************************************************
     // Logging
@@ -109,6 +126,8 @@ public class DatabaseModule implements Module {
     @Override
     public void init() {
         logger.info("Initializing persistence");
+        QueryUtils.init(configuration);
+        AnnotationsManager.getManager().addAnnotationMapping(Cached.class.getName(), CachedImpl.class.getName());
         DatabasePlatformsRegistry databasePlatformsRegistry = new DatabasePlatformsRegistry(configuration);
 
         persistence = new Persistence(applicationDirectory, configuration, databasePlatformsRegistry);
@@ -20,7 +20,10 @@
 
 package com.manydesigns.portofino.persistence;
 
+import com.google.common.hash.Hashing;
+import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.util.ElementsFileUtils;
+import com.manydesigns.elements.xml.JAXBContextRegistry;
 import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.cache.CacheResetEvent;
 import com.manydesigns.portofino.cache.CacheResetListenerRegistry;
@@ -32,6 +35,11 @@ import com.manydesigns.portofino.modules.BaseModule;
 import com.manydesigns.portofino.modules.DatabaseModule;
 import com.manydesigns.portofino.persistence.hibernate.HibernateConfig;
 import com.manydesigns.portofino.persistence.hibernate.HibernateDatabaseSetup;
+import com.manydesigns.portofino.persistence.hibernate.HibernateMappingCache;
+import com.manydesigns.portofino.persistence.hibernate.PooledConnectionProvider;
+import com.manydesigns.portofino.persistence.hibernate.ReplicaDatabaseSetup;
+import com.manydesigns.portofino.persistence.hibernate.WriteTrackingInterceptor;
+import com.manydesigns.portofino.reflection.CompactEntityGenerator;
 import com.manydesigns.portofino.reflection.TableAccessor;
 import com.manydesigns.portofino.sync.DatabaseSyncer;
 import liquibase.Contexts;
@@ -46,11 +54,13 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -60,8 +70,13 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.sql.Connection;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -79,6 +94,7 @@ public class Persistence {
 
     public static final String APP_DBS_DIR = "dbs";
     public static final String APP_MODEL_FILE = "portofino-model.xml";
+    public static final String APP_MAPPING_CACHE_DIR = "cache/mappings";
 
     public final static String changelogFileNameTemplate = "{0}-changelog.xml";
 
@@ -90,10 +106,13 @@ public class Persistence {
     protected Model model;
     protected final Map<String, HibernateDatabaseSetup> setups;
 
+
     protected final File appDir;
     protected final File appDbsDir;
     protected final File appModelFile;
+    protected final HibernateMappingCache mappingCache;
     protected final org.apache.commons.configuration.Configuration configuration;
+    protected ScheduledExecutorService replicaChecker;
 
     @Inject(BaseModule.CACHE_RESET_LISTENER_REGISTRY)
     public CacheResetListenerRegistry cacheResetListenerRegistry;
@@ -130,6 +149,13 @@ public class Persistence {
         }
 
         setups = new HashMap<String, HibernateDatabaseSetup>();
+
+        if(configuration.getBoolean(DatabaseModule.MAPPING_CACHE_ENABLED, true)) {
+            mappingCache = new HibernateMappingCache(new File(appDir, APP_MAPPING_CACHE_DIR));
+            logger.info("Mapping snapshots dir: {}", mappingCache.getDirectory().getAbsolutePath());
+        } else {
+            mappingCache = null;
+        }
     }
 
     //**************************************************************************
@@ -140,43 +166,123 @@ public class Persistence {
         logger.info("Loading xml model from file: {}", appModelFile.getAbsolutePath());
 
         try {
-            JAXBContext jc = JAXBContext.newInstance(Model.class.getPackage().getName());
-            Unmarshaller um = jc.createUnmarshaller();
+            long start = System.currentTimeMillis();
+            final JAXBContextRegistry.PooledContext jc = JAXBContextRegistry.get(Model.class);
+            Unmarshaller um = jc.acquireUnmarshaller();
             Model model = (Model) um.unmarshal(appModelFile);
             File modelDir = getModelDirectory();
-            for(Database database : model.getDatabases()) {
-                File databaseDir = new File(modelDir, database.getDatabaseName());
-                for(Schema schema : database.getSchemas()) {
-                    File schemaDir = new File(databaseDir, schema.getSchemaName());
-                    if(schemaDir.isDirectory()) {
-                        logger.debug("Schema directory {} exists", schemaDir);
-                        File[] tableFiles = schemaDir.listFiles(new FilenameFilter() {
-                            @Override
-                            public boolean accept(File dir, String name) {
-                                return name.endsWith(".table.xml");
-                            }
-                        });
-                        for(File tableFile : tableFiles) {
-                            Table table = (Table) um.unmarshal(tableFile);
-                            if(!tableFile.getName().equalsIgnoreCase(table.getTableName() + ".table.xml")) {
-                                throw new Exception("Found table " + table.getTableName() + " defined in file " + tableFile);
+            //Table files are unmarshalled in parallel, then added to their schemas in order
+            List<Schema> tableSchemas = new ArrayList<Schema>();
+            List<Future<Table>> tableFutures = new ArrayList<Future<Table>>();
+            ExecutorService executor = createStartupExecutor("portofino-model-loader", Integer.MAX_VALUE);
+            try {
+                for(Database database : model.getDatabases()) {
+                    File databaseDir = new File(modelDir, database.getDatabaseName());
+                    for(Schema schema : database.getSchemas()) {
+                        File schemaDir = new File(databaseDir, schema.getSchemaName());
+                        if(schemaDir.isDirectory()) {
+                            logger.debug("Schema directory {} exists", schemaDir);
+                            File[] tableFiles = schemaDir.listFiles(new FilenameFilter() {
+                                @Override
+                                public boolean accept(File dir, String name) {
+                                    return name.endsWith(".table.xml");
+                                }
+                            });
+                            for(final File tableFile : tableFiles) {
+                                tableSchemas.add(schema);
+                                tableFutures.add(executor.submit(new Callable<Table>() {
+                                    public Table call() throws Exception {
+                                        Unmarshaller tableUm = jc.acquireUnmarshaller();
+                                        Table table;
+                                        try {
+                                            table = (Table) tableUm.unmarshal(tableFile);
+                                        } finally {
+                                            jc.release(tableUm);
+                                        }
+                                        if(!tableFile.getName().equalsIgnoreCase(table.getTableName() + ".table.xml")) {
+                                            throw new Exception("Found table " + table.getTableName() + " defined in file " + tableFile);
+                                        }
+                                        return table;
+                                    }
+                                }));
                             }
-                            table.afterUnmarshal(um, schema);
-                            schema.getTables().add(table);
+                        } else {
+                            logger.debug("Schema directory {} does not exist", schemaDir);
                         }
-                    } else {
-                        logger.debug("Schema directory {} does not exist", schemaDir);
                     }
                 }
+                for(int i = 0; i < tableFutures.size(); i++) {
+                    Schema schema = tableSchemas.get(i);
+                    Table table = getStartupResult(tableFutures.get(i));
+                    table.afterUnmarshal(um, schema);
+                    schema.getTables().add(table);
+                }
+            } finally {
+                executor.shutdownNow();
+                jc.release(um);
             }
+            logger.info("Loaded {} tables in {} ms", tableFutures.size(), System.currentTimeMillis() - start);
+            Model previousModel = this.model;
             this.model = model;
-            initModel();
+            try {
+                initModel();
+            } finally {
+                //The old session factories have been closed by initModel, so the old pools can be released
+                if(previousModel != null) {
+                    shutdownConnectionProviders(previousModel);
+                }
+            }
         } catch (Exception e) {
             String msg = "Cannot load/parse model: " + appModelFile;
             logger.error(msg, e);
         }
     }
 
+    /**
+     * Returns the JAXB context for the model, shared with {@link JAXBContextRegistry}.
+     */
+    protected static JAXBContext getModelJAXBContext() throws JAXBException {
+        return JAXBContextRegistry.getContext(Model.class);
+    }
+
+    /**
+     * Creates a bounded executor used to parallelize startup tasks (loading the model, initializing databases).
+     * @param name the prefix of the names of the threads.
+     * @param tasks the number of tasks that will be submitted, used to avoid creating threads that would stay idle.
+     */
+    protected ExecutorService createStartupExecutor(final String name, int tasks) {
+        int threads = configuration.getInt(
+                DatabaseModule.STARTUP_THREADS, Runtime.getRuntime().availableProcessors());
+        threads = Math.max(1, Math.min(threads, tasks));
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            protected final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Waits for the result of a startup task, rethrowing its exception, if any.
+     */
+    protected static <T> T getStartupResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
     protected File getModelDirectory() {
         return new File(appModelFile.getParentFile(), FilenameUtils.getBaseName(appModelFile.getName()));
     }
@@ -230,52 +336,61 @@ public class Persistence {
         //TODO gestire conflitti con modifiche esterne?
         File tempFile = File.createTempFile(appModelFile.getName(), "");
 
-        JAXBContext jc = JAXBContext.newInstance(Model.class.getPackage().getName());
-        Marshaller m = jc.createMarshaller();
-        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        m.marshal(model, tempFile);
+        JAXBContextRegistry.PooledContext jc = JAXBContextRegistry.get(Model.class);
+        Marshaller m = jc.acquireMarshaller();
+        try {
+            m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            m.marshal(model, tempFile);
 
-        ElementsFileUtils.moveFileSafely(tempFile, appModelFile.getAbsolutePath());
+            ElementsFileUtils.moveFileSafely(tempFile, appModelFile.getAbsolutePath());
 
-        File modelDir = getModelDirectory();
-        for(Database database : model.getDatabases()) {
-            File databaseDir = new File(modelDir, database.getDatabaseName());
-            for(Schema schema : database.getSchemas()) {
-                File schemaDir = new File(databaseDir, schema.getSchemaName());
-                if(schemaDir.isDirectory() || schemaDir.mkdirs()) {
-                    logger.debug("Schema directory {} exists", schemaDir);
-                    File[] tableFiles = schemaDir.listFiles(new FilenameFilter() {
-                        @Override
-                        public boolean accept(File dir, String name) {
-                            return name.endsWith(".table.xml");
+            File modelDir = getModelDirectory();
+            for(Database database : model.getDatabases()) {
+                File databaseDir = new File(modelDir, database.getDatabaseName());
+                for(Schema schema : database.getSchemas()) {
+                    File schemaDir = new File(databaseDir, schema.getSchemaName());
+                    if(schemaDir.isDirectory() || schemaDir.mkdirs()) {
+                        logger.debug("Schema directory {} exists", schemaDir);
+                        File[] tableFiles = schemaDir.listFiles(new FilenameFilter() {
+                            @Override
+                            public boolean accept(File dir, String name) {
+                                return name.endsWith(".table.xml");
+                            }
+                        });
+                        for(File tableFile : tableFiles) {
+                            if(!tableFile.delete()) {
+                                logger.warn("Could not delete table file {}", tableFile.getAbsolutePath());
+                            }
                         }
-                    });
-                    for(File tableFile : tableFiles) {
-                        if(!tableFile.delete()) {
-                            logger.warn("Could not delete table file {}", tableFile.getAbsolutePath());
+                        for(Table table : schema.getTables()) {
+                            File tableFile = new File(schemaDir, table.getTableName() + ".table.xml");
+                            m.marshal(table, tableFile);
                         }
+                    } else {
+                        logger.debug("Schema directory {} does not exist", schemaDir);
                     }
-                    for(Table table : schema.getTables()) {
-                        File tableFile = new File(schemaDir, table.getTableName() + ".table.xml");
-                        m.marshal(table, tableFile);
-                    }
-                } else {
-                    logger.debug("Schema directory {} does not exist", schemaDir);
                 }
             }
+        } finally {
+            jc.release(m);
         }
         logger.info("Saved xml model to file: {}", appModelFile);
     }
 
     public synchronized void initModel() {
+        stopReplicaChecker();
         logger.info("Cleaning up old setups");
         for (Map.Entry<String, HibernateDatabaseSetup> current : setups.entrySet()) {
             String databaseName = current.getKey();
             logger.info("Cleaning up old setup for: {}", databaseName);
             HibernateDatabaseSetup hibernateDatabaseSetup = current.getValue();
             try {
+                hibernateDatabaseSetup.logCacheStatistics();
                 SessionFactory sessionFactory = hibernateDatabaseSetup.getSessionFactory();
                 sessionFactory.close();
+                for(ReplicaDatabaseSetup replica : hibernateDatabaseSetup.getReplicas()) {
+                    replica.getSessionFactory().close();
+                }
             } catch (Throwable t) {
                 logger.warn("Cannot close session factory for: " + databaseName, t);
             }
@@ -283,42 +398,248 @@ public class Persistence {
 
         setups.clear();
         model.init();
-        for (Database database : model.getDatabases()) {
-            try {
-                ConnectionProvider connectionProvider = database.getConnectionProvider();
-                connectionProvider.init(databasePlatformsRegistry);
-                if (connectionProvider.getStatus().equals(ConnectionProvider.STATUS_CONNECTED)) {
-                    HibernateConfig builder = new HibernateConfig(connectionProvider, configuration);
-                    String trueString = database.getTrueString();
-                    if (trueString != null) {
-                        builder.setTrueString(
-                                "null".equalsIgnoreCase(trueString) ? null : trueString);
+        //Databases are independent of each other, so they are initialized in parallel
+        List<Database> databases = model.getDatabases();
+        List<Future<HibernateDatabaseSetup>> futures = new ArrayList<Future<HibernateDatabaseSetup>>();
+        ExecutorService executor = createStartupExecutor("portofino-database-init", databases.size());
+        try {
+            for (final Database database : databases) {
+                futures.add(executor.submit(new Callable<HibernateDatabaseSetup>() {
+                    public HibernateDatabaseSetup call() throws Exception {
+                        ElementsThreadLocals.setupDefaultElementsContext();
+                        try {
+                            return initDatabase(database);
+                        } finally {
+                            ElementsThreadLocals.removeElementsContext();
+                        }
                     }
-                    String falseString = database.getFalseString();
-                    if (falseString != null) {
-                        builder.setFalseString(
-                                "null".equalsIgnoreCase(falseString) ? null : falseString);
+                }));
+            }
+            for (int i = 0; i < databases.size(); i++) {
+                Database database = databases.get(i);
+                try {
+                    HibernateDatabaseSetup setup = getStartupResult(futures.get(i));
+                    if (setup != null) {
+                        setups.put(database.getDatabaseName(), setup);
                     }
-                    Configuration configuration =
-                            builder.buildSessionFactory(database);
-                    StandardServiceRegistryBuilder registryBuilder =
-                            new StandardServiceRegistryBuilder().applySettings(configuration.getProperties());
-                    SessionFactory sessionFactory = configuration.buildSessionFactory(registryBuilder.build());
-
-                    HibernateDatabaseSetup setup =
-                            new HibernateDatabaseSetup(
-                                    configuration, sessionFactory);
-                    String databaseName = database.getDatabaseName();
-                    setups.put(databaseName, setup);
+                } catch (Exception e) {
+                    logger.error("Could not create connection provider for " + database, e);
                 }
-            } catch (Exception e) {
-                logger.error("Could not create connection provider for " + database, e);
             }
+        } finally {
+            executor.shutdownNow();
         }
+        startReplicaChecker();
 
         cacheResetListenerRegistry.fireReset(new CacheResetEvent(this));
     }
 
+    /**
+     * Starts measuring the replication lag of the replicas, if any, every
+     * {@link DatabaseModule#REPLICA_CHECK_INTERVAL} milliseconds, so that requests never wait for a replica to
+     * answer before choosing it.
+     */
+    protected void startReplicaChecker() {
+        final List<ReplicaDatabaseSetup> replicas = new ArrayList<ReplicaDatabaseSetup>();
+        for(HibernateDatabaseSetup setup : setups.values()) {
+            replicas.addAll(setup.getReplicas());
+        }
+        if(replicas.isEmpty()) {
+            return;
+        }
+        replicaChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "portofino-replica-checker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long checkInterval = configuration.getLong(DatabaseModule.REPLICA_CHECK_INTERVAL, 5000);
+        replicaChecker.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                for(ReplicaDatabaseSetup replica : replicas) {
+                    try {
+                        replica.checkLag();
+                    } catch (Throwable t) {
+                        logger.warn("Could not check replica " + replica.getConnectionProvider(), t);
+                    }
+                }
+            }
+        }, 0, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    protected void stopReplicaChecker() {
+        if(replicaChecker != null) {
+            replicaChecker.shutdownNow();
+            replicaChecker = null;
+        }
+    }
+
+    /**
+     * Connects to a database and builds its session factories.
+     * @param database the database.
+     * @return the setup of the database, or null if it could not be connected.
+     */
+    protected HibernateDatabaseSetup initDatabase(Database database) {
+        String databaseName = database.getDatabaseName();
+        long start = System.currentTimeMillis();
+        ConnectionProvider connectionProvider = database.getConnectionProvider();
+        connectionProvider.init(databasePlatformsRegistry);
+        long connected = System.currentTimeMillis();
+        if (!connectionProvider.getStatus().equals(ConnectionProvider.STATUS_CONNECTED)) {
+            logger.info("Database {} not connected after {} ms", databaseName, connected - start);
+            return null;
+        }
+        //Hibernate loads mapped classes from the context class loader, generated entity classes included
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+        if(configuration.getBoolean(DatabaseModule.COMPACT_ENTITIES_ENABLED, false)) {
+            CompactEntityGenerator generator = new CompactEntityGenerator(contextClassLoader);
+            generator.generate(database);
+            currentThread.setContextClassLoader(generator.getClassLoader());
+        }
+        long mapped, built, end;
+        HibernateDatabaseSetup setup;
+        try {
+            Configuration configuration = buildConfiguration(database, connectionProvider);
+            configuration.setInterceptor(new WriteTrackingInterceptor());
+            mapped = System.currentTimeMillis();
+            SessionFactory sessionFactory = buildSessionFactory(configuration, connectionProvider);
+            built = System.currentTimeMillis();
+
+            setup = new HibernateDatabaseSetup(configuration, sessionFactory);
+            setupReplicas(database, setup);
+            end = System.currentTimeMillis();
+        } finally {
+            currentThread.setContextClassLoader(contextClassLoader);
+        }
+        logger.info("Database {} initialized in {} ms (connection: {} ms, mapping: {} ms, " +
+                    "session factory: {} ms, replicas: {} ms)",
+                new Object[] { databaseName, end - start, connected - start, mapped - connected,
+                               built - mapped, end - built });
+        return setup;
+    }
+
+    protected Configuration buildConfiguration(Database database, ConnectionProvider connectionProvider) {
+        HibernateConfig builder = new HibernateConfig(connectionProvider, configuration);
+        String trueString = database.getTrueString();
+        if (trueString != null) {
+            builder.setTrueString(
+                    "null".equalsIgnoreCase(trueString) ? null : trueString);
+        }
+        String falseString = database.getFalseString();
+        if (falseString != null) {
+            builder.setFalseString(
+                    "null".equalsIgnoreCase(falseString) ? null : falseString);
+        }
+        builder.setQueryCacheEnabled(hasCacheableSelectionProviders(database));
+        if(mappingCache == null) {
+            return builder.buildSessionFactory(database);
+        }
+        //Reuse the mapping computed by a previous run, if nothing it depends on has changed
+        String snapshotName = getMappingSnapshotName(database, connectionProvider);
+        String hash;
+        try {
+            hash = builder.computeMappingHash(database, getModelJAXBContext());
+        } catch (JAXBException e) {
+            logger.warn("Could not compute the mapping hash of " + database + ", not using snapshots", e);
+            return builder.buildSessionFactory(database);
+        }
+        Configuration configuration = mappingCache.load(snapshotName, hash);
+        if(configuration != null) {
+            builder.restoreMapping(configuration, database);
+        } else {
+            configuration = builder.buildSessionFactory(database);
+            mappingCache.store(snapshotName, hash, configuration);
+        }
+        return configuration;
+    }
+
+    /**
+     * Tells whether any selection provider in the model runs a cacheable query on the given database.
+     */
+    protected boolean hasCacheableSelectionProviders(Database database) {
+        for(Database aDatabase : model.getDatabases()) {
+            for(Schema schema : aDatabase.getSchemas()) {
+                for(Table table : schema.getTables()) {
+                    for(ModelSelectionProvider selectionProvider : table.getSelectionProviders()) {
+                        if(selectionProvider instanceof DatabaseSelectionProvider &&
+                           Boolean.TRUE.equals(((DatabaseSelectionProvider) selectionProvider).getCacheable()) &&
+                           database.getDatabaseName().equals(selectionProvider.getToDatabase())) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    protected String getMappingSnapshotName(Database database, ConnectionProvider connectionProvider) {
+        String connectionHash = Hashing.sha1().hashUnencodedChars(connectionProvider.getDescription()).toString();
+        return database.getDatabaseName() + "-" + connectionHash.substring(0, 8);
+    }
+
+    protected SessionFactory buildSessionFactory(Configuration configuration, ConnectionProvider connectionProvider) {
+        StandardServiceRegistryBuilder registryBuilder =
+                new StandardServiceRegistryBuilder().applySettings(configuration.getProperties());
+        if(connectionProvider instanceof JdbcConnectionProvider &&
+           ((JdbcConnectionProvider) connectionProvider).getPool() != null) {
+            if(isHibernateConnectionProviderConfigured(configuration.getProperties())) {
+                logger.warn("A Hibernate connection provider is configured for {}, not using the Portofino " +
+                            "connection pool for Hibernate sessions", connectionProvider.getDescription());
+                return configuration.buildSessionFactory(registryBuilder.build());
+            }
+            registryBuilder.addService(
+                    org.hibernate.engine.jdbc.connections.spi.ConnectionProvider.class,
+                    new PooledConnectionProvider(((JdbcConnectionProvider) connectionProvider).getPool()));
+        }
+        return configuration.buildSessionFactory(registryBuilder.build());
+    }
+
+    /**
+     * Whether the Hibernate settings (e.g. in hibernate.properties) explicitly choose a connection provider, a
+     * data source or a c3p0 pool, which must not be replaced by the Portofino connection pool.
+     */
+    protected boolean isHibernateConnectionProviderConfigured(Properties properties) {
+        if(properties.getProperty(AvailableSettings.CONNECTION_PROVIDER) != null ||
+           properties.getProperty(AvailableSettings.DATASOURCE) != null) {
+            return true;
+        }
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith("hibernate.c3p0.")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void setupReplicas(Database database, HibernateDatabaseSetup setup) {
+        for(ConnectionProvider replicaConnectionProvider : database.getReplicaConnectionProviders()) {
+            try {
+                replicaConnectionProvider.init(databasePlatformsRegistry);
+                if (replicaConnectionProvider.getStatus().equals(ConnectionProvider.STATUS_CONNECTED)) {
+                    Configuration configuration = buildConfiguration(database, replicaConnectionProvider);
+                    //Writes to the primary would not evict the entries cached by a replica, which could then serve
+                    //stale data indefinitely
+                    configuration
+                            .setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false")
+                            .setProperty(AvailableSettings.USE_QUERY_CACHE, "false");
+                    SessionFactory sessionFactory = buildSessionFactory(configuration, replicaConnectionProvider);
+                    setup.getReplicas().add(
+                            new ReplicaDatabaseSetup(configuration, sessionFactory, replicaConnectionProvider));
+                    logger.info("Added replica {} of database {}",
+                            replicaConnectionProvider.getDescription(), database.getDatabaseName());
+                } else {
+                    logger.warn("Replica {} of database {} is not connected, skipping it",
+                            replicaConnectionProvider.getDescription(), database.getDatabaseName());
+                }
+            } catch (Exception e) {
+                logger.error("Could not create replica connection provider for " + database, e);
+            }
+        }
+    }
+
     //**************************************************************************
     // Database stuff
     //**************************************************************************
@@ -366,10 +687,51 @@ public class Persistence {
     // Persistance
     //**************************************************************************
 
+    /**
+     * Returns the session bound to the current thread for the given database. If the current request is
+     * {@link ReadOnly read-only} and has not written to the database, the session is a
+     * {@link HibernateDatabaseSetup#getReadOnlyThreadSession() read-only session}, opened on one of the replicas of
+     * the database if any is available. Replicas lagging more than {@link DatabaseModule#REPLICA_MAX_LAG} seconds
+     * are skipped.
+     * @param databaseName the name of the database.
+     * @return the session.
+     */
     public Session getSession(String databaseName) {
+        HibernateDatabaseSetup setup = ensureDatabaseSetup(databaseName);
+        if(isReadOnlyRequest() && !setup.isWrittenByThread()) {
+            if(!setup.getReplicas().isEmpty()) {
+                ReplicaDatabaseSetup replica = setup.getThreadReplica();
+                if(replica == null) {
+                    replica = setup.selectReplica(configuration.getLong(DatabaseModule.REPLICA_MAX_LAG, 30));
+                }
+                if(replica != null) {
+                    return replica.getReadOnlyThreadSession();
+                }
+                logger.debug("No replica available for {}, using the primary database", databaseName);
+            }
+            return setup.getReadOnlyThreadSession();
+        }
+        return setup.getThreadSession();
+    }
+
+    /**
+     * Returns a writable session bound to the current thread for the primary connection of the given database, even
+     * if the current request is read-only.
+     * @param databaseName the name of the database.
+     * @return the session.
+     */
+    public Session getPrimarySession(String databaseName) {
         return ensureDatabaseSetup(databaseName).getThreadSession();
     }
 
+    public boolean isReadOnlyRequest() {
+        if(ElementsThreadLocals.getElementsContext() == null) {
+            return false;
+        }
+        HttpServletRequest request = ElementsThreadLocals.getHttpServletRequest();
+        return request != null && Boolean.TRUE.equals(request.getAttribute(ReadOnly.REQUEST_ATTRIBUTE));
+    }
+
     protected HibernateDatabaseSetup ensureDatabaseSetup(String databaseName) {
         HibernateDatabaseSetup setup = setups.get(databaseName);
         if (setup == null) {
@@ -378,6 +740,10 @@ public class Persistence {
         return setup;
     }
 
+    /**
+     * Closes the sessions bound to the current thread. Changes made through a read-only session, which are lost, are
+     * logged as errors: since this is called from cleanup code, no exception is thrown.
+     */
     public void closeSessions() {
         for (HibernateDatabaseSetup current : setups.values()) {
             closeSession(current);
@@ -389,9 +755,19 @@ public class Persistence {
     }
 
     protected void closeSession(HibernateDatabaseSetup current) {
+        for(ReplicaDatabaseSetup replica : current.getReplicas()) {
+            closeSession(replica);
+        }
+        current.resetWrittenByThread();
         Session session = current.getThreadSession(false);
         if (session != null) {
             try {
+                if(HibernateDatabaseSetup.isDirtyReadOnlySession(session)) {
+                    logger.error(
+                            "Changes made through a read-only session have not been saved. Entities: {}. Use " +
+                            "Persistence.getPrimarySession, or remove @ReadOnly from the handler that writes.",
+                            HibernateDatabaseSetup.getWritableEntityNames(session));
+                }
                 Transaction transaction = session.getTransaction();
                 if(transaction != null && transaction.isActive()) {
                     transaction.rollback();
@@ -424,15 +800,39 @@ public class Persistence {
     }
 
     public void stop() {
+        stopReplicaChecker();
         for(HibernateDatabaseSetup setup : setups.values()) {
             //TODO It is the responsibility of the application to ensure that there are no open Sessions before calling close().
             //http://ajava.org/online/hibernate3api/org/hibernate/SessionFactory.html#close%28%29
+            setup.logCacheStatistics();
             setup.getSessionFactory().close();
+            for(ReplicaDatabaseSetup replica : setup.getReplicas()) {
+                replica.getSessionFactory().close();
+            }
         }
+        shutdownConnectionProviders(model);
+    }
+
+    /**
+     * Shuts down the connection providers, primary and replicas, of the databases of a model, releasing their pools.
+     */
+    protected void shutdownConnectionProviders(Model model) {
         for (Database database : model.getDatabases()) {
             ConnectionProvider connectionProvider =
                     database.getConnectionProvider();
-            connectionProvider.shutdown();
+            try {
+                connectionProvider.shutdown();
+            } catch (Throwable t) {
+                logger.warn("Cannot shut down connection provider for: " + database.getDatabaseName(), t);
+            }
+            for(ConnectionProvider replicaConnectionProvider : database.getReplicaConnectionProviders()) {
+                try {
+                    replicaConnectionProvider.shutdown();
+                } catch (Throwable t) {
+                    logger.warn("Cannot shut down replica connection provider for: " +
+                            database.getDatabaseName(), t);
+                }
+            }
         }
     }
 
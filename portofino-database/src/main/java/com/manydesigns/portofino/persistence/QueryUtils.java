@@ -20,6 +20,13 @@
 
 package com.manydesigns.portofino.persistence;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.manydesigns.elements.fields.search.Criterion;
 import com.manydesigns.elements.fields.search.TextMatchMode;
 import com.manydesigns.elements.reflection.ClassAccessor;
@@ -37,13 +44,20 @@ import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.JdbcParameter;
 import net.sf.jsqlparser.expression.Parenthesis;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.*;
+import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.jdbc.Work;
 import org.jetbrains.annotations.Nullable;
@@ -56,7 +70,10 @@ import java.sql.*;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -80,6 +97,53 @@ public class QueryUtils {
 
     protected static final Logger logger = LoggerFactory.getLogger(QueryUtils.class);
 
+    //Cache configuration properties
+    public static final String PARSED_QUERY_CACHE_SIZE = "parsed.query.cache.size";
+    public static final String FETCH_SIZE = "query.fetch.size";
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    /**
+     * Number of rows fetched from the database at a time by the scroll* methods.
+     */
+    protected static volatile int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * Cache of parsed HQL queries, keyed by their format string (i.e. with OGNL expressions already replaced by
+     * positional parameters). Cached queries are shared and must never be modified: use
+     * {@link #parseQuery(String)} to obtain a private copy.
+     */
+    protected static volatile LoadingCache<String, PlainSelect> parsedQueryCache = createParsedQueryCache(1000);
+
+    public static void init(Configuration portofinoConfiguration) {
+        int maxSize = portofinoConfiguration.getInt(PARSED_QUERY_CACHE_SIZE, 1000);
+        parsedQueryCache = createParsedQueryCache(maxSize);
+        fetchSize = portofinoConfiguration.getInt(FETCH_SIZE, DEFAULT_FETCH_SIZE);
+    }
+
+    protected static LoadingCache<String, PlainSelect> createParsedQueryCache(int maxSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build(new CacheLoader<String, PlainSelect>() {
+                    @Override
+                    public PlainSelect load(String key) throws Exception {
+                        return parseQuery(new CCJSqlParserManager(), key);
+                    }
+                });
+    }
+
+    /**
+     * Returns the hit/miss statistics of the parsed query cache.
+     * @return the statistics since the cache was (re)initialized.
+     */
+    public static CacheStats getParsedQueryCacheStats() {
+        return parsedQueryCache.stats();
+    }
+
+    public static void clearParsedQueryCache() {
+        parsedQueryCache.invalidateAll();
+    }
+
     /**
      * Runs a SQL query against a session. The query is processed with an {@link OgnlSqlFormat}, so it can
      * access values from the OGNL context.
@@ -129,14 +193,99 @@ public class QueryUtils {
                 }
             });
         } catch (HibernateException e) {
-            session.getTransaction().rollback();
-            session.beginTransaction();
+            rollbackAndRestartTransaction(session);
             throw e;
         }
 
         return result;
     }
 
+    /**
+     * Runs a SQL query against a session, passing each row to a handler as soon as it is read, instead of
+     * collecting all of them in a list. Rows are fetched from the database in batches (see {@link #FETCH_SIZE})
+     * using a forward-only, read-only cursor, so memory usage does not depend on the size of the result.
+     * @param session the session
+     * @param queryString the query
+     * @param parameters parameters to substitute in the query
+     * @param handler the handler, receiving each row as an Object[] (an array cell per column)
+     * @return the number of rows passed to the handler
+     */
+    public static int scrollSql(
+            Session session, final String queryString, final Object[] parameters,
+            final ResultHandler<Object[]> handler) {
+        final int[] count = { 0 };
+        try {
+            session.doWork(new Work() {
+                public void execute(Connection connection) throws SQLException {
+                    //Some drivers (e.g. PostgreSQL) only use a cursor when not in autocommit mode
+                    boolean autoCommit = connection.getAutoCommit();
+                    if(autoCommit) {
+                        connection.setAutoCommit(false);
+                    }
+                    PreparedStatement stmt = connection.prepareStatement(
+                            queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    try {
+                        stmt.setFetchSize(fetchSize);
+                        for (int i = 0; i < parameters.length; i++) {
+                            stmt.setObject(i + 1, parameters[i]);
+                        }
+                        ResultSet rs = stmt.executeQuery();
+                        ResultSetMetaData md = rs.getMetaData();
+                        int cc = md.getColumnCount();
+                        while(rs.next()) {
+                            Object[] current = new Object[cc];
+                            for(int i = 0; i < cc; i++) {
+                                current[i] = rs.getObject(i + 1);
+                            }
+                            count[0]++;
+                            if(!handler.handle(current)) {
+                                break;
+                            }
+                        }
+                    } finally {
+                        stmt.close(); //Chiude anche il result set
+                        if(autoCommit) {
+                            connection.setAutoCommit(true);
+                        }
+                    }
+                }
+            });
+        } catch (HibernateException e) {
+            rollbackAndRestartTransaction(session);
+            throw e;
+        }
+        return count[0];
+    }
+
+    /**
+     * Runs a SQL query against a session, passing each row to a handler as soon as it is read.
+     * The query is processed with an {@link OgnlSqlFormat}, so it can access values from the OGNL context.
+     * @see #scrollSql(Session, String, Object[], ResultHandler)
+     * @param session the session
+     * @param sql the query string
+     * @param handler the handler, receiving each row as an Object[] (an array cell per column)
+     * @return the number of rows passed to the handler
+     */
+    public static int scrollSql(Session session, String sql, ResultHandler<Object[]> handler) {
+        OgnlHqlFormat hqlFormat = OgnlHqlFormat.create(sql);
+        String formatString = hqlFormat.getFormatString();
+        Object[] parameters = hqlFormat.evaluateOgnlExpressions(null);
+        return scrollSql(session, formatString, parameters, handler);
+    }
+
+    /**
+     * Rolls back the transaction of a session after an error and begins a new one, so that the session can still be
+     * used. Read-only sessions, which have no transaction, are left alone.
+     * @param session the session.
+     */
+    protected static void rollbackAndRestartTransaction(Session session) {
+        Transaction transaction = session.getTransaction();
+        if(transaction.isActive()) {
+            transaction.rollback();
+            session.beginTransaction();
+        }
+    }
+
     /**
      * Runs a query, expressed as {@link TableCriteria}, against the database.
      * @param session the session
@@ -224,6 +373,7 @@ public class QueryUtils {
         for (Criterion criterion : criteria) {
             PropertyAccessor accessor = criterion.getPropertyAccessor();
             String hqlFormat;
+            Object[] propertyNames = new Object[] { accessor.getName() };
             if (criterion instanceof TableCriteria.EqCriterion) {
                 TableCriteria.EqCriterion eqCriterion =
                         (TableCriteria.EqCriterion) criterion;
@@ -314,6 +464,36 @@ public class QueryUtils {
                     hqlFormat = "lower({0}) like lower(?" + (parametersList.size() + initialParameterIndex) + ")";
                     parametersList.add(pattern);
                 }
+            } else if (criterion instanceof TableCriteria.KeysetCriterion) {
+                TableCriteria.KeysetCriterion keysetCriterion =
+                        (TableCriteria.KeysetCriterion) criterion;
+                PropertyAccessor[] accessors = keysetCriterion.getPropertyAccessors();
+                Object[] values = keysetCriterion.getValues();
+                String operator = keysetCriterion.isDesc() ? " < " : " > ";
+                //(a, b) > (?, ?) is expanded to (a > ? OR (a = ? AND b > ?)), which every database supports
+                StringBuilder keysetFormat = new StringBuilder();
+                int parentheses = 0;
+                for(int i = 0; i < accessors.length; i++) {
+                    if(i < accessors.length - 1) {
+                        keysetFormat.append("({").append(i).append("}").append(operator)
+                                .append("?").append(parametersList.size() + initialParameterIndex);
+                        parametersList.add(values[i]);
+                        keysetFormat.append(" OR ({").append(i).append("} = ?")
+                                .append(parametersList.size() + initialParameterIndex).append(" AND ");
+                        parametersList.add(values[i]);
+                        parentheses += 2;
+                    } else {
+                        keysetFormat.append("{").append(i).append("}").append(operator)
+                                .append("?").append(parametersList.size() + initialParameterIndex);
+                        parametersList.add(values[i]);
+                    }
+                }
+                keysetFormat.append(StringUtils.repeat(")", parentheses));
+                hqlFormat = keysetFormat.toString();
+                propertyNames = new Object[accessors.length];
+                for(int i = 0; i < accessors.length; i++) {
+                    propertyNames[i] = accessors[i].getName();
+                }
             } else if (criterion instanceof TableCriteria.IsNullCriterion) {
                 hqlFormat = "{0} is null";
             } else if (criterion instanceof TableCriteria.IsNotNullCriterion) {
@@ -327,11 +507,12 @@ public class QueryUtils {
                 continue;
             }
 
-            String accessorName = accessor.getName();
             if(alias != null) {
-                accessorName = alias + "." + accessorName;
+                for(int i = 0; i < propertyNames.length; i++) {
+                    propertyNames[i] = alias + "." + propertyNames[i];
+                }
             }
-            String hql = MessageFormat.format(hqlFormat, accessorName);
+            String hql = MessageFormat.format(hqlFormat, propertyNames);
 
             if (whereBuilder.length() > 0) {
                 whereBuilder.append(" AND ");
@@ -447,11 +628,10 @@ public class QueryUtils {
         String formatString = hqlFormat.getFormatString();
         Object[] parameters = hqlFormat.evaluateOgnlExpressions(rootObject);
 
-        CCJSqlParserManager parserManager = new CCJSqlParserManager();
         PlainSelect parsedQueryString;
         PlainSelect parsedCriteriaQuery;
         try {
-            parsedQueryString = parseQuery(parserManager, formatString);
+            parsedQueryString = parseQuery(formatString);
         } catch (JSQLParserException e) {
             throw new RuntimeException("Couldn't merge query", e);
         }
@@ -471,7 +651,7 @@ public class QueryUtils {
             if(StringUtils.isEmpty(criteriaQueryString)) {
                 parsedCriteriaQuery = new PlainSelect();
             } else {
-                parsedCriteriaQuery = parseQuery(parserManager, criteriaQueryString);
+                parsedCriteriaQuery = parseQuery(criteriaQueryString);
             }
         } catch (JSQLParserException e) {
             throw new RuntimeException("Couldn't merge query", e);
@@ -494,22 +674,29 @@ public class QueryUtils {
         parsedQueryString.setWhere(whereExpression);
         if(criteria != null && criteria.getOrderBy() != null) {
             List orderByElements = new ArrayList();
-            OrderByElement orderByElement = new OrderByElement();
-            orderByElement.setAsc(criteria.getOrderBy().isAsc());
-            String propertyName = criteria.getOrderBy().getPropertyAccessor().getName();
-            if(mainEntityAlias != null) {
-                propertyName = mainEntityAlias.getName() + "." + propertyName;
+            List<String> orderByProperties = new ArrayList<String>();
+            List<TableCriteria.OrderBy> criteriaOrderBy = new ArrayList<TableCriteria.OrderBy>();
+            criteriaOrderBy.add(criteria.getOrderBy());
+            criteriaOrderBy.addAll(criteria.getAdditionalOrderBy());
+            for(TableCriteria.OrderBy orderBy : criteriaOrderBy) {
+                OrderByElement orderByElement = new OrderByElement();
+                orderByElement.setAsc(orderBy.isAsc());
+                String propertyName = orderBy.getPropertyAccessor().getName();
+                if(mainEntityAlias != null) {
+                    propertyName = mainEntityAlias.getName() + "." + propertyName;
+                }
+                orderByElement.setExpression(
+                        new net.sf.jsqlparser.schema.Column(
+                                new net.sf.jsqlparser.schema.Table(), propertyName));
+                orderByElements.add(orderByElement);
+                orderByProperties.add(propertyName);
             }
-            orderByElement.setExpression(
-                    new net.sf.jsqlparser.schema.Column(
-                            new net.sf.jsqlparser.schema.Table(), propertyName));
-            orderByElements.add(orderByElement);
             if(parsedQueryString.getOrderByElements() != null) {
                 for(Object el : parsedQueryString.getOrderByElements()) {
                     OrderByElement toAdd = (OrderByElement) el;
                     if(toAdd.getExpression() instanceof net.sf.jsqlparser.schema.Column) {
                         net.sf.jsqlparser.schema.Column column = (net.sf.jsqlparser.schema.Column) toAdd.getExpression();
-                        if(StringUtils.isEmpty(column.getTable().getName()) && propertyName.equals(column.getColumnName())) {
+                        if(StringUtils.isEmpty(column.getTable().getName()) && orderByProperties.contains(column.getColumnName())) {
                             continue; //do not add
                         }
                     }
@@ -535,6 +722,65 @@ public class QueryUtils {
 
     public static final String FAKE_SELECT_PREFIX = "select __portofino_fake_select__ ";
 
+    /**
+     * The maximum number of primary keys looked up by a single query. Some databases (e.g. Oracle) limit the
+     * number of elements of an IN list to 1000.
+     */
+    public static final int MAX_KEYS_PER_QUERY = 500;
+
+    /**
+     * The maximum number of composite primary keys looked up by a single query. Each key becomes a nested OR
+     * term, and deeply nested conditions are slow to parse and can exhaust the stack of the HQL parser.
+     */
+    public static final int MAX_COMPOSITE_KEYS_PER_QUERY = 50;
+
+    /**
+     * Parses a HQL query, reusing a previously parsed instance when available. The returned object is a copy of
+     * the cached one, so its top-level clauses (where, order by, etc.) can be replaced freely; the expressions it
+     * contains are shared, however, and must not be modified in place.
+     * @param query the query to parse.
+     * @return the parsed query.
+     * @throws JSQLParserException if the query cannot be parsed.
+     */
+    public static PlainSelect parseQuery(String query) throws JSQLParserException {
+        PlainSelect parsedQuery;
+        try {
+            parsedQuery = parsedQueryCache.get(query);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), JSQLParserException.class);
+            throw Throwables.propagate(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        return copyQuery(parsedQuery);
+    }
+
+    protected static PlainSelect copyQuery(PlainSelect query) {
+        PlainSelect copy = new PlainSelect();
+        copy.setDistinct(query.getDistinct());
+        copy.setSelectItems(query.getSelectItems());
+        copy.setIntoTables(query.getIntoTables());
+        copy.setFromItem(query.getFromItem());
+        copy.setJoins(query.getJoins());
+        copy.setWhere(query.getWhere());
+        copy.setGroupByColumnReferences(query.getGroupByColumnReferences());
+        copy.setOrderByElements(query.getOrderByElements());
+        copy.setHaving(query.getHaving());
+        copy.setLimit(query.getLimit());
+        copy.setOffset(query.getOffset());
+        copy.setFetch(query.getFetch());
+        copy.setSkip(query.getSkip());
+        copy.setFirst(query.getFirst());
+        copy.setTop(query.getTop());
+        copy.setOracleHierarchical(query.getOracleHierarchical());
+        copy.setOracleHint(query.getOracleHint());
+        copy.setOracleSiblings(query.isOracleSiblings());
+        copy.setForUpdate(query.isForUpdate());
+        copy.setForUpdateTable(query.getForUpdateTable());
+        copy.setUseBrackets(query.isUseBrackets());
+        return copy;
+    }
+
     public static PlainSelect parseQuery(CCJSqlParserManager parserManager, String query) throws JSQLParserException {
         PlainSelect parsedQueryString;
         if(!query.toLowerCase().trim().startsWith("select")) {
@@ -577,8 +823,31 @@ public class QueryUtils {
             @Nullable Object[] parameters,
             @Nullable Integer firstResult,
             @Nullable Integer maxResults) {
+        return runHqlQuery(session, queryString, parameters, firstResult, maxResults, false);
+    }
+
+    /**
+     * Runs a HQL query against the database, optionally caching its results in the Hibernate query cache. The
+     * query cache is only enabled for databases with cached tables.
+     * @see QueryUtils#runHqlQuery(Session, String, Object[], Integer, Integer)
+     * @param session the session
+     * @param queryString the query
+     * @param parameters the query parameters
+     * @param firstResult index of the first result to return
+     * @param maxResults maximum number of results to return
+     * @param cacheable whether the results of the query can be cached
+     * @return the results of the query
+     */
+    public static List<Object> runHqlQuery(
+            Session session,
+            String queryString,
+            @Nullable Object[] parameters,
+            @Nullable Integer firstResult,
+            @Nullable Integer maxResults,
+            boolean cacheable) {
 
         Query query = session.createQuery(queryString);
+        query.setCacheable(cacheable);
         if (parameters != null) {
             for (int i = 0; i < parameters.length; i++) {
                 query.setParameter(String.valueOf(i + 1), parameters[i]);
@@ -599,10 +868,76 @@ public class QueryUtils {
             return result;
         } catch (HibernateException e) {
             logger.error("Error running query", e);
-            session.getTransaction().rollback();
-            session.beginTransaction();
+            rollbackAndRestartTransaction(session);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a HQL query against the database, passing each result to a handler as soon as it is read, instead of
+     * collecting all of them in a list. Results are read in batches (see {@link #FETCH_SIZE}) with a forward-only
+     * cursor, and entities are loaded read-only and evicted from the session once handled, so memory usage does not
+     * depend on the size of the result. Since eviction also applies to entities the session already contained,
+     * pending changes to them must be flushed before calling this method.
+     * @see QueryUtils#runHqlQuery(Session, String, Object[], Integer, Integer)
+     * @param session the session
+     * @param queryString the query
+     * @param parameters the query parameters
+     * @param firstResult index of the first result to return
+     * @param maxResults maximum number of results to return
+     * @param handler the handler, receiving each result (an entity, a value, or an Object[] if the query selects
+     * more than one item)
+     * @return the number of results passed to the handler
+     */
+    public static int scrollHqlQuery(
+            Session session,
+            String queryString,
+            @Nullable Object[] parameters,
+            @Nullable Integer firstResult,
+            @Nullable Integer maxResults,
+            ResultHandler<Object> handler) {
+        Query query = session.createQuery(queryString);
+        if (parameters != null) {
+            for (int i = 0; i < parameters.length; i++) {
+                query.setParameter(String.valueOf(i + 1), parameters[i]);
+            }
+        }
+        if (firstResult != null) {
+            query.setFirstResult(firstResult);
+        }
+        if(maxResults != null) {
+            query.setMaxResults(maxResults);
+        }
+        query.setReadOnly(true);
+        query.setFetchSize(fetchSize);
+
+        int count = 0;
+        ScrollableResults results;
+        try {
+            results = query.scroll(ScrollMode.FORWARD_ONLY);
+        } catch (HibernateException e) {
+            logger.error("Error running query", e);
+            rollbackAndRestartTransaction(session);
             throw e;
         }
+        try {
+            while(results.next()) {
+                Object[] row = results.get();
+                count++;
+                boolean proceed = handler.handle(row.length == 1 ? row[0] : row);
+                for(Object item : row) {
+                    if(item != null && session.contains(item)) {
+                        session.evict(item);
+                    }
+                }
+                if(!proceed) {
+                    break;
+                }
+            }
+        } finally {
+            results.close();
+        }
+        return count;
     }
 
     /**
@@ -694,7 +1029,7 @@ public class QueryUtils {
         Object[] parameters = new Object[p + keyProperties.length];
         System.arraycopy(ognlParameters, 0, parameters, 0, p);
         try {
-            PlainSelect parsedQuery = parseQuery(new CCJSqlParserManager(), formatString);
+            PlainSelect parsedQuery = parseQuery(formatString);
             if(parsedQuery.getWhere() == null) {
                 return getObjectByPk(persistence, database, entityName, pk);
             }
@@ -738,6 +1073,132 @@ public class QueryUtils {
         }
     }
 
+    /**
+     * Loads several objects by primary key, verifying that they fall within the results of a given query. Objects
+     * are loaded with as few queries as possible, each one asking for at most {@link #MAX_KEYS_PER_QUERY} keys, or
+     * {@link #MAX_COMPOSITE_KEYS_PER_QUERY} keys if the primary key is composite.
+     * @param persistence the persistence object
+     * @param baseTable the table to load from
+     * @param pkObjects the primary key objects
+     * @param query the query (where condition) that the objects must fulfill
+     * @param rootObject the OGNL root object against which to evaluate the query string.
+     * @return the loaded objects, in the same order as their keys. Objects that don't exist or fall outside the
+     * query are omitted.
+     */
+    public static List<Object> getObjectsByPk(
+            Persistence persistence, Table baseTable, List<? extends Serializable> pkObjects,
+            String query, Object rootObject) {
+        return getObjectsByPk(
+                persistence, baseTable.getDatabaseName(), baseTable.getActualEntityName(),
+                pkObjects, query, rootObject);
+    }
+
+    /**
+     * Loads several objects by primary key, verifying that they fall within the results of a given query.
+     * @see #getObjectsByPk(Persistence, Table, List, String, Object)
+     * @param persistence the persistence object
+     * @param database the database (connection provider)
+     * @param entityName the name of the entity to load
+     * @param pks the primary key objects
+     * @param hqlQueryString the query (where condition) that the objects must fulfill
+     * @param rootObject the OGNL root object against which to evaluate the query string.
+     * @return the loaded objects, in the same order as their keys.
+     */
+    public static List<Object> getObjectsByPk(
+            Persistence persistence, String database, String entityName,
+            List<? extends Serializable> pks, String hqlQueryString, Object rootObject) {
+        TableAccessor table = persistence.getTableAccessor(database, entityName);
+        PropertyAccessor[] keyProperties = table.getKeyProperties();
+        OgnlHqlFormat hqlFormat = OgnlHqlFormat.create(hqlQueryString);
+        String formatString = hqlFormat.getFormatString();
+        Object[] ognlParameters = hqlFormat.evaluateOgnlExpressions(rootObject);
+        Session session = persistence.getSession(database);
+
+        Map<List<Object>, Object> objectsByKey = new HashMap<List<Object>, Object>();
+        int keysPerQuery = keyProperties.length == 1 ? MAX_KEYS_PER_QUERY : MAX_COMPOSITE_KEYS_PER_QUERY;
+        for(List<? extends Serializable> chunk : Lists.partition(pks, keysPerQuery)) {
+            List<Object> parameters = new ArrayList<Object>(Arrays.asList(ognlParameters));
+            PlainSelect parsedQuery;
+            try {
+                parsedQuery = parseQuery(formatString);
+            } catch (JSQLParserException e) {
+                throw new Error(e);
+            }
+            Alias mainEntityAlias = getEntityAlias(entityName, parsedQuery);
+            net.sf.jsqlparser.schema.Table mainEntityTable;
+            if(mainEntityAlias != null) {
+                mainEntityTable = new net.sf.jsqlparser.schema.Table(null, mainEntityAlias.getName());
+            } else {
+                mainEntityTable = new net.sf.jsqlparser.schema.Table();
+            }
+
+            Expression keyCondition;
+            if(keyProperties.length == 1) {
+                List<Expression> keyParameters = new ArrayList<Expression>(chunk.size());
+                for(Serializable pk : chunk) {
+                    parameters.add(keyProperties[0].get(pk));
+                    keyParameters.add(makeJdbcParameter(parameters.size()));
+                }
+                keyCondition = new InExpression(
+                        new net.sf.jsqlparser.schema.Column(mainEntityTable, keyProperties[0].getName()),
+                        new ExpressionList(keyParameters));
+            } else {
+                keyCondition = null;
+                for(Serializable pk : chunk) {
+                    Expression pkCondition = null;
+                    for(PropertyAccessor propertyAccessor : keyProperties) {
+                        parameters.add(propertyAccessor.get(pk));
+                        EqualsTo condition = new EqualsTo();
+                        condition.setLeftExpression(
+                                new net.sf.jsqlparser.schema.Column(mainEntityTable, propertyAccessor.getName()));
+                        condition.setRightExpression(makeJdbcParameter(parameters.size()));
+                        pkCondition = pkCondition == null ? condition : new AndExpression(pkCondition, condition);
+                    }
+                    keyCondition = keyCondition == null ?
+                            new Parenthesis(pkCondition) :
+                            new OrExpression(keyCondition, new Parenthesis(pkCondition));
+                }
+            }
+            if(parsedQuery.getWhere() != null) {
+                parsedQuery.setWhere(
+                        new AndExpression(new Parenthesis(keyCondition), new Parenthesis(parsedQuery.getWhere())));
+            } else {
+                parsedQuery.setWhere(keyCondition);
+            }
+
+            String fullQueryString = parsedQuery.toString();
+            if(fullQueryString.toLowerCase().startsWith(FAKE_SELECT_PREFIX)) {
+                fullQueryString = fullQueryString.substring(FAKE_SELECT_PREFIX.length());
+            }
+            for(Object object : runHqlQuery(session, fullQueryString, parameters.toArray())) {
+                objectsByKey.put(getKeyValues(keyProperties, object), object);
+            }
+        }
+
+        List<Object> result = new ArrayList<Object>(objectsByKey.size());
+        for(Serializable pk : pks) {
+            Object object = objectsByKey.get(getKeyValues(keyProperties, pk));
+            if(object != null) {
+                result.add(object);
+            }
+        }
+        return result;
+    }
+
+    protected static JdbcParameter makeJdbcParameter(int index) {
+        JdbcParameter jdbcParameter = new JdbcParameter();
+        jdbcParameter.setIndex(index);
+        return jdbcParameter;
+    }
+
+    protected static List<Object> getKeyValues(PropertyAccessor[] keyProperties, Object object) {
+        List<Object> keyValues = new ArrayList<Object>(keyProperties.length);
+        for(PropertyAccessor propertyAccessor : keyProperties) {
+            keyValues.add(propertyAccessor.get(object));
+        }
+        return keyValues;
+    }
+
     protected static Alias getEntityAlias(String entityName, PlainSelect query) {
         FromItem fromItem = query.getFromItem();
         if (hasEntityAlias(entityName, fromItem)) {
@@ -768,7 +1229,7 @@ public class QueryUtils {
      * @param databaseName the name of the database (connection provider)
      */
     public static void commit(Persistence persistence, String databaseName) {
-        Session session = persistence.getSession(databaseName);
+        Session session = persistence.getPrimarySession(databaseName);
         try {
             session.getTransaction().commit();
         } catch (HibernateException e) {
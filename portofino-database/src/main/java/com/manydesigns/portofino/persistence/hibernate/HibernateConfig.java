@@ -20,15 +20,24 @@
 
 package com.manydesigns.portofino.persistence.hibernate;
 
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.manydesigns.elements.reflection.JavaClassAccessor;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.portofino.database.StringBooleanType;
+import com.manydesigns.portofino.database.annotations.Cached;
+import com.manydesigns.portofino.model.Annotation;
 import com.manydesigns.portofino.model.database.*;
 import com.manydesigns.portofino.model.database.ForeignKey;
 import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
+import com.manydesigns.portofino.modules.DatabaseModule;
+import com.manydesigns.portofino.modules.ModuleRegistry;
 import liquibase.structure.core.ForeignKeyConstraintType;
+import org.apache.commons.lang.StringUtils;
 import org.hibernate.FetchMode;
 import org.hibernate.MappingException;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.BinderHelper;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Mappings;
@@ -48,12 +57,18 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -67,6 +82,7 @@ public class HibernateConfig {
     protected final ConnectionProvider connectionProvider;
     protected final org.apache.commons.configuration.Configuration portofinoConfiguration;
     private static final boolean LAZY = true;
+    public static final int DEFAULT_JDBC_BATCH_SIZE = 50;
     public static final Logger logger =
             LoggerFactory.getLogger(HibernateConfig.class);
 
@@ -74,6 +90,11 @@ public class HibernateConfig {
     private String trueString = "T";
     private String falseString = "F";
 
+    //Second-level cache regions of the mapped entities and collections, with their time to live
+    protected final Map<String, Integer> cacheRegions = new HashMap<String, Integer>();
+    //Whether the query cache is needed even if no table is cached, e.g. by cacheable selection providers
+    protected boolean queryCacheEnabled;
+
     public HibernateConfig(ConnectionProvider connectionProvider,
                            org.apache.commons.configuration.Configuration portofinoConfiguration) {
         this.connectionProvider = connectionProvider;
@@ -93,6 +114,8 @@ public class HibernateConfig {
             classMapping(database, mappings);
             //One2Many Mapping
             o2mMapping(database, configuration, mappings);
+            //Second-level cache
+            setupCache(configuration);
 
             //TODO
             //mappings.addSecondPass(new ToOneFkSecondPass(?));
@@ -107,15 +130,120 @@ public class HibernateConfig {
         }
     }
 
+    /**
+     * Computes a hash of everything the mapping of a database depends on: the model of the database, the connection
+     * settings, the relevant configuration properties and the properties of the mapped Java classes, if any. If the
+     * hash does not change, the mapping would not change either, so a snapshot of it can be reused.
+     * @see HibernateMappingCache
+     */
+    public String computeMappingHash(Database database, JAXBContext jaxbContext) throws JAXBException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        putHashString(hasher, getClass().getName());
+        putHashString(hasher, org.hibernate.Version.getVersionString());
+        putHashString(hasher, ModuleRegistry.getPortofinoVersion());
+        putHashString(hasher, trueString);
+        putHashString(hasher, falseString);
+        putHashString(hasher, connectionProvider.getClass().getName());
+        hasher.putBoolean(connectionProvider.isHibernateDialectAutodetected());
+        putHashString(hasher, connectionProvider.getActualHibernateDialectName());
+        //Column types depend on the platform, see createColumn
+        DatabasePlatform databasePlatform = connectionProvider.getDatabasePlatform();
+        putHashString(hasher, databasePlatform != null ? databasePlatform.getClass().getName() : null);
+        if(connectionProvider instanceof JdbcConnectionProvider) {
+            JdbcConnectionProvider jdbcConnectionProvider = (JdbcConnectionProvider) connectionProvider;
+            putHashString(hasher, jdbcConnectionProvider.getActualUrl());
+            putHashString(hasher, jdbcConnectionProvider.getDriver());
+            putHashString(hasher, jdbcConnectionProvider.getActualUsername());
+        } else if(connectionProvider instanceof JndiConnectionProvider) {
+            putHashString(hasher, ((JndiConnectionProvider) connectionProvider).getJndiResource());
+        }
+        hasher.putInt(portofinoConfiguration.getInt(DatabaseModule.JDBC_BATCH_SIZE, DEFAULT_JDBC_BATCH_SIZE));
+        hasher.putLong(portofinoConfiguration.getLong(DatabaseModule.CACHE_MAX_SIZE, PortofinoEhCacheRegionFactory.DEFAULT_MAX_SIZE));
+        hasher.putBoolean(queryCacheEnabled);
+
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.marshal(
+                new JAXBElement<Database>(new QName("database"), Database.class, database),
+                Funnels.asOutputStream(hasher));
+
+        for (Schema schema : database.getSchemas()) {
+            for (com.manydesigns.portofino.model.database.Table aTable : schema.getTables()) {
+                Class javaClass = aTable.getActualJavaClass();
+                if(javaClass != null) {
+                    putHashString(hasher, javaClass.getName());
+                    for(PropertyAccessor propertyAccessor : JavaClassAccessor.getClassAccessor(javaClass).getProperties()) {
+                        putHashString(hasher, propertyAccessor.getName());
+                    }
+                } else if(aTable.getActualEntityClass() != null) {
+                    putHashString(hasher, aTable.getActualEntityClass().getName());
+                }
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    protected static void putHashString(Hasher hasher, String string) {
+        hasher.putUnencodedChars(String.valueOf(string)).putChar('\0');
+    }
+
+    /**
+     * Prepares a configuration restored from a snapshot for use: sets the connection properties, which are not
+     * stored in snapshots, and replays the changes that mapping makes to the model.
+     */
+    public void restoreMapping(Configuration configuration, Database database) {
+        setupConnection(configuration);
+        Iterator<PersistentClass> classes = configuration.getClassMappings();
+        while (classes.hasNext()) {
+            PersistentClass clazz = classes.next();
+            Iterator properties = clazz.getPropertyIterator();
+            while (properties.hasNext()) {
+                Object property = properties.next();
+                if(property instanceof SyntheticProperty) {
+                    com.manydesigns.portofino.model.database.Table aTable =
+                            DatabaseLogic.findTableByEntityName(database, clazz.getEntityName());
+                    String name = ((SyntheticProperty) property).getName();
+                    if(aTable != null && !aTable.getSyntheticPropertyNames().contains(name)) {
+                        aTable.getSyntheticPropertyNames().add(name);
+                    }
+                }
+            }
+        }
+    }
+
     protected void setupConfigurationProperties(Configuration configuration) {
         configuration
                 .setProperty("hibernate.current_session_context_class", "org.hibernate.context.internal.ThreadLocalSessionContext")
                 .setProperty("org.hibernate.hql.ast.AST", "true")
-                .setProperty("hibernate.globally_quoted_identifiers", "false");
+                .setProperty("hibernate.globally_quoted_identifiers", "false")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(
+                        portofinoConfiguration.getInt(DatabaseModule.JDBC_BATCH_SIZE, DEFAULT_JDBC_BATCH_SIZE)))
+                .setProperty(AvailableSettings.ORDER_UPDATES, "true");
         // mettendo la modalità dynamic map, non funzionano le entità mappate su bean.
         // configuration.setProperty("hibernate.default_entity_mode", "dynamic-map");
     }
 
+    protected void setupCache(Configuration configuration) {
+        if(cacheRegions.isEmpty() && !queryCacheEnabled) {
+            return;
+        }
+        configuration
+                .setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true")
+                .setProperty(AvailableSettings.USE_QUERY_CACHE, "true")
+                .setProperty(AvailableSettings.AUTO_EVICT_COLLECTION_CACHE, "true")
+                .setProperty(AvailableSettings.CACHE_REGION_FACTORY, PortofinoEhCacheRegionFactory.class.getName())
+                .setProperty(PortofinoEhCacheRegionFactory.CACHE_MANAGER_NAME,
+                        connectionProvider.getDatabase().getDatabaseName())
+                .setProperty(PortofinoEhCacheRegionFactory.MAX_SIZE,
+                        String.valueOf(portofinoConfiguration.getLong(
+                                DatabaseModule.CACHE_MAX_SIZE, PortofinoEhCacheRegionFactory.DEFAULT_MAX_SIZE)));
+        for(Map.Entry<String, Integer> region : cacheRegions.entrySet()) {
+            configuration.setProperty(
+                    PortofinoEhCacheRegionFactory.REGION_PROPERTY_PREFIX + region.getKey() +
+                    PortofinoEhCacheRegionFactory.TIME_TO_LIVE_SUFFIX,
+                    String.valueOf(region.getValue()));
+        }
+    }
+
     protected void setupConnection(Configuration configuration) {
         if(!connectionProvider.isHibernateDialectAutodetected()) {
             configuration.setProperty(
@@ -197,12 +325,14 @@ public class HibernateConfig {
         RootClass clazz = new RootClass();
         clazz.setEntityName(aTable.getActualEntityName());
         clazz.setJpaEntityName(aTable.getActualEntityName());
-        if (aTable.getJavaClass() != null) {
-            clazz.setClassName(aTable.getJavaClass());
-            clazz.setProxyInterfaceName(aTable.getJavaClass());
+        String className = getMappedClassName(aTable);
+        if (className != null) {
+            clazz.setClassName(className);
+            clazz.setProxyInterfaceName(className);
         }
         clazz.setLazy(LAZY);
         clazz.setTable(tab);
+        setupCache(clazz, aTable);
         //clazz.setNodeName(aTable.getTableName());
 
         List<com.manydesigns.portofino.model.database.Column> columnList =
@@ -259,6 +389,40 @@ public class HibernateConfig {
         return clazz;
     }
 
+    /**
+     * Returns the name of the class the entities of a table are mapped to: either the Java class configured in the
+     * model, or the generated entity class, if any. If null, the table is mapped to dynamic (map) entities.
+     */
+    protected String getMappedClassName(com.manydesigns.portofino.model.database.Table aTable) {
+        if (aTable.getJavaClass() != null) {
+            return aTable.getJavaClass();
+        } else if (aTable.getActualEntityClass() != null) {
+            return aTable.getActualEntityClass().getName();
+        } else {
+            return null;
+        }
+    }
+
+    protected void setupCache(RootClass clazz, com.manydesigns.portofino.model.database.Table aTable) {
+        Annotation annotation = DatabaseLogic.findAnnotation(aTable, Cached.class);
+        if(annotation == null || !(annotation.getJavaAnnotation() instanceof Cached)) {
+            return;
+        }
+        Cached cached = (Cached) annotation.getJavaAnnotation();
+        String usage = cached.usage();
+        if(!Cached.READ_ONLY.equals(usage) && !Cached.NONSTRICT_READ_WRITE.equals(usage) &&
+           !Cached.READ_WRITE.equals(usage)) {
+            logger.warn("Unsupported cache usage {} for table {}, using {}",
+                    new Object[] { usage, aTable.getQualifiedName(), Cached.NONSTRICT_READ_WRITE });
+            usage = Cached.NONSTRICT_READ_WRITE;
+        }
+        String region = StringUtils.defaultIfEmpty(cached.region(), aTable.getActualEntityName());
+        clazz.setCacheConcurrencyStrategy(usage);
+        clazz.setCacheRegionName(region);
+        cacheRegions.put(region, cached.timeToLive());
+        logger.debug("Caching table {} in region {} ({})", new Object[] { aTable.getQualifiedName(), region, usage });
+    }
+
     protected Column createColumn(Mappings mappings,
                                 Table tab,
                                 com.manydesigns.portofino.model.database.Column column) {
@@ -313,7 +477,8 @@ public class HibernateConfig {
 
         clazz.setEmbeddedIdentifier(true);
         Component component = new Component(mappings, clazz);
-        component.setDynamic(mdTable.getActualJavaClass()==null);
+        String className = getMappedClassName(mdTable);
+        component.setDynamic(className == null);
         String name;
         name = mdTable.getQualifiedName();
 
@@ -324,8 +489,7 @@ public class HibernateConfig {
         component.setNullValue("undefined");
 
         if (!component.isDynamic()){
-            component.setComponentClassName
-                    (mdTable.getJavaClass()); //TODO verificare se non si intende actualJavaClass
+            component.setComponentClassName(className);
         }
 
         boolean hasErrors = false;
@@ -615,6 +779,13 @@ public class HibernateConfig {
             set.setKey(keyVal);
         }
 
+        //The collection is cached only if both its owner and its elements are
+        if(clazzOne.getCacheConcurrencyStrategy() != null && clazzMany.getCacheConcurrencyStrategy() != null) {
+            set.setCacheConcurrencyStrategy(Cached.NONSTRICT_READ_WRITE);
+            set.setCacheRegionName(set.getRole());
+            cacheRegions.put(set.getRole(), cacheRegions.get(clazzOne.getRootClass().getCacheRegionName()));
+        }
+
         mappings.addCollection(set);
 
         Property prop = new Property();
@@ -984,4 +1155,16 @@ public class HibernateConfig {
         this.falseString = falseString;
     }
 
+    public boolean isQueryCacheEnabled() {
+        return queryCacheEnabled;
+    }
+
+    /**
+     * Enables the query cache (and the second-level cache regions it needs) even if no table is
+     * {@link Cached cached}.
+     */
+    public void setQueryCacheEnabled(boolean queryCacheEnabled) {
+        this.queryCacheEnabled = queryCacheEnabled;
+    }
+
 }
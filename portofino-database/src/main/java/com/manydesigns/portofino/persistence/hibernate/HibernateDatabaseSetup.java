@@ -20,12 +20,28 @@
 
 package com.manydesigns.portofino.persistence.hibernate;
 
+import com.google.common.cache.CacheStats;
+import org.hibernate.FlushMode;
+import org.hibernate.Interceptor;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -39,6 +55,8 @@ public class HibernateDatabaseSetup {
     protected final Configuration configuration;
     protected final SessionFactory sessionFactory;
     protected final ThreadLocal<Session> threadSessions;
+    protected final List<ReplicaDatabaseSetup> replicas = new ArrayList<ReplicaDatabaseSetup>();
+    protected final AtomicInteger nextReplica = new AtomicInteger();
 
         public static final Logger logger =
             LoggerFactory.getLogger(HibernateDatabaseSetup.class);
@@ -58,6 +76,28 @@ public class HibernateDatabaseSetup {
         return configuration;
     }
 
+    /**
+     * @return the statistics of the second-level and query cache regions, by region name. Empty if the
+     * second-level cache is not enabled.
+     */
+    public Map<String, CacheStats> getCacheStatistics() {
+        if(sessionFactory instanceof SessionFactoryImplementor) {
+            RegionFactory regionFactory = ((SessionFactoryImplementor) sessionFactory).getSettings().getRegionFactory();
+            if(regionFactory instanceof PortofinoEhCacheRegionFactory) {
+                return ((PortofinoEhCacheRegionFactory) regionFactory).getStatistics();
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    public void logCacheStatistics() {
+        for(Map.Entry<String, CacheStats> entry : getCacheStatistics().entrySet()) {
+            CacheStats stats = entry.getValue();
+            logger.info("Cache region {}: {} requests, hit ratio {}",
+                    new Object[] { entry.getKey(), stats.requestCount(), stats.hitRate() });
+        }
+    }
+
     public ThreadLocal<Session> getThreadSessions() {
         return threadSessions;
     }
@@ -75,6 +115,81 @@ public class HibernateDatabaseSetup {
             session = sessionFactory.openSession();
             session.beginTransaction();
             threadSessions.set(session);
+        } else if(session != null && create && session.isDefaultReadOnly()) {
+            //The caller might write, so the read-only session opened earlier in the request must become writable,
+            //together with the entities it has already loaded, or changes to them would never be flushed.
+            //The session is kept rather than reopened because callers may hold references to it.
+            logger.debug("Making thread-local session writable for {}", Thread.currentThread());
+            session.setDefaultReadOnly(false);
+            makeLoadedEntitiesWritable(session);
+            session.setFlushMode(FlushMode.AUTO);
+            if(!session.getTransaction().isActive()) {
+                session.beginTransaction();
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Makes the entities loaded by a read-only session writable. Their current state becomes the snapshot used
+     * for dirty checking, so only the changes made from now on are flushed.
+     */
+    protected void makeLoadedEntitiesWritable(Session session) {
+        PersistenceContext persistenceContext = ((SessionImplementor) session).getPersistenceContext();
+        List<Object> readOnlyEntities = new ArrayList<Object>();
+        for(Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+            if(entry.getValue().isReadOnly() && entry.getValue().getPersister().isMutable()) {
+                readOnlyEntities.add(entry.getKey());
+            }
+        }
+        for(Object entity : readOnlyEntities) {
+            session.setReadOnly(entity, false);
+        }
+    }
+
+    /**
+     * Tells whether a read-only session has pending changes (new, deleted or writable modified entities), which
+     * would be silently lost, since read-only sessions are never flushed.
+     * @param session the session.
+     * @return true if the session is read-only and dirty.
+     */
+    public static boolean isDirtyReadOnlySession(Session session) {
+        return session.isOpen() && session.isDefaultReadOnly() && session.isDirty();
+    }
+
+    /**
+     * Returns the names of the entities that a session holds in writable mode, i.e. the ones that may have
+     * pending changes (saved, deleted or modified after being made writable).
+     * @param session the session.
+     * @return the entity names, in no particular order.
+     */
+    public static Set<String> getWritableEntityNames(Session session) {
+        PersistenceContext persistenceContext = ((SessionImplementor) session).getPersistenceContext();
+        Set<String> entityNames = new TreeSet<String>();
+        for(Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+            if(!entry.getValue().isReadOnly()) {
+                entityNames.add(entry.getValue().getEntityName());
+            }
+        }
+        return entityNames;
+    }
+
+    /**
+     * Returns the session bound to the current thread, opening a read-only one if there's none. A read-only session
+     * does not begin a transaction, is never flushed automatically and loads entities in read-only mode, so Hibernate
+     * does not keep snapshots of them for dirty checking. If the thread already has a session, it is returned as is.
+     * @return the session.
+     */
+    public Session getReadOnlyThreadSession() {
+        Session session = threadSessions.get();
+        if(session == null) {
+            if(logger.isDebugEnabled()) {
+                logger.debug("Creating read-only thread-local session for {}", Thread.currentThread());
+            }
+            session = sessionFactory.openSession();
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            threadSessions.set(session);
         }
         return session;
     }
@@ -86,4 +201,62 @@ public class HibernateDatabaseSetup {
     public void removeThreadSession() {
         threadSessions.remove();
     }
+
+    //**************************************************************************
+    // Replicas
+    //**************************************************************************
+
+    public List<ReplicaDatabaseSetup> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Returns the replica that already holds a session for the current thread, so that all the reads of a request
+     * are served by the same replica.
+     * @return the replica, or null if the current thread has no replica session.
+     */
+    public ReplicaDatabaseSetup getThreadReplica() {
+        for(ReplicaDatabaseSetup replica : replicas) {
+            if(replica.getThreadSession(false) != null) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Picks an available replica, in round-robin order.
+     * @param maxLag the maximum acceptable replication lag, in seconds.
+     * @return the replica, or null if no replica is available.
+     */
+    public ReplicaDatabaseSetup selectReplica(long maxLag) {
+        int size = replicas.size();
+        if(size == 0) {
+            return null;
+        }
+        int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % size;
+        for(int i = 0; i < size; i++) {
+            ReplicaDatabaseSetup replica = replicas.get((start + i) % size);
+            if(replica.isAvailable(maxLag)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the current thread has written to this database since its sessions were last closed.
+     * @return true if the current thread has written.
+     */
+    public boolean isWrittenByThread() {
+        Interceptor interceptor = configuration.getInterceptor();
+        return interceptor instanceof WriteTrackingInterceptor && ((WriteTrackingInterceptor) interceptor).isWritten();
+    }
+
+    public void resetWrittenByThread() {
+        Interceptor interceptor = configuration.getInterceptor();
+        if(interceptor instanceof WriteTrackingInterceptor) {
+            ((WriteTrackingInterceptor) interceptor).reset();
+        }
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import com.manydesigns.elements.util.ElementsFileUtils;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.cfg.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * Stores snapshots of Hibernate configurations (i.e. of the computed mappings) on disk, so that they can be reused
+ * instead of mapping the model again. Each snapshot is stored together with a hash of everything the mapping depends
+ * on; a snapshot is only returned if its hash matches, otherwise the mapping has to be computed from scratch.
+ * Connection passwords are never written to disk.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class HibernateMappingCache {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final String FILE_EXTENSION = ".mapping.ser";
+    public static final String PASSWORD_PROPERTY = "hibernate.connection.password";
+
+    protected final File directory;
+
+    public static final Logger logger = LoggerFactory.getLogger(HibernateMappingCache.class);
+
+    public HibernateMappingCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads a snapshot.
+     * @param name the name of the snapshot.
+     * @param hash the expected hash.
+     * @return the stored configuration, or null if there's no snapshot with the given name and hash.
+     */
+    public Configuration load(String name, String hash) {
+        File file = getFile(name);
+        if(!file.isFile()) {
+            logger.debug("No mapping snapshot for {}", name);
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(!hash.equals(in.readUTF())) {
+                logger.info("Mapping snapshot for {} is stale, it will be recomputed", name);
+                return null;
+            }
+            Configuration configuration = (Configuration) in.readObject();
+            logger.info("Loaded mapping snapshot for {} from {}", name, file);
+            return configuration;
+        } catch (Exception e) {
+            logger.warn("Could not load mapping snapshot " + file + ", it will be recomputed", e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores a snapshot of a configuration. It must be called before building a session factory from the
+     * configuration. Failures are logged and otherwise ignored.
+     * @param name the name of the snapshot.
+     * @param hash the hash of the inputs of the mapping.
+     * @param configuration the configuration.
+     */
+    public void store(String name, String hash, Configuration configuration) {
+        if(!ElementsFileUtils.ensureDirectoryExistsAndWarnIfNotWritable(directory)) {
+            return;
+        }
+        File file = getFile(name);
+        Properties properties = configuration.getProperties();
+        Object password = properties.remove(PASSWORD_PROPERTY);
+        ObjectOutputStream out = null;
+        try {
+            File tempFile = File.createTempFile(file.getName(), "", directory);
+            try {
+                out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+                out.writeUTF(hash);
+                out.writeObject(configuration);
+                out.close();
+                out = null;
+                ElementsFileUtils.moveFileSafely(tempFile, file.getAbsolutePath());
+                logger.debug("Stored mapping snapshot for {} in {}", name, file);
+            } finally {
+                IOUtils.closeQuietly(out);
+                if(tempFile.exists() && !tempFile.delete()) {
+                    logger.warn("Could not delete temporary file {}", tempFile);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not store mapping snapshot " + file, e);
+        } finally {
+            if(password != null) {
+                properties.put(PASSWORD_PROPERTY, password);
+            }
+        }
+    }
+
+    protected File getFile(String name) {
+        return new File(directory, name + FILE_EXTENSION);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import com.manydesigns.portofino.model.database.JdbcConnectionPool;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hibernate connection provider backed by the connection pool of a
+ * {@link com.manydesigns.portofino.model.database.JdbcConnectionProvider}. The pool is owned by the Portofino
+ * connection provider, which closes it on shutdown.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    protected final JdbcConnectionPool pool;
+
+    public PooledConnectionProvider(JdbcConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return pool.acquire();
+    }
+
+    public void closeConnection(Connection conn) throws SQLException {
+        conn.close();
+    }
+
+    public boolean supportsAggressiveRelease() {
+        return true;
+    }
+
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType) ||
+               PooledConnectionProvider.class.isAssignableFrom(unwrapType) ||
+               JdbcConnectionPool.class.isAssignableFrom(unwrapType);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if(ConnectionProvider.class.equals(unwrapType) ||
+           PooledConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return (T) this;
+        } else if(JdbcConnectionPool.class.isAssignableFrom(unwrapType)) {
+            return (T) pool;
+        } else {
+            throw new UnknownUnwrapTypeException(unwrapType);
+        }
+    }
+
+    public JdbcConnectionPool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import com.google.common.cache.CacheStats;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cfg.Settings;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Ehcache region factory configured from Hibernate properties rather than from an ehcache.xml file, so that each
+ * session factory gets its own, uniquely named cache manager. The time to live of a region, in seconds, is read
+ * from the {@value #REGION_PROPERTY_PREFIX}&lt;region&gt;{@value #TIME_TO_LIVE_SUFFIX} property; the maximum
+ * number of entries of every region from the {@value #MAX_SIZE} property.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class PortofinoEhCacheRegionFactory extends EhCacheRegionFactory {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final String CACHE_MANAGER_NAME = "portofino.cache.name";
+    public static final String REGION_PROPERTY_PREFIX = "portofino.cache.region.";
+    public static final String TIME_TO_LIVE_SUFFIX = ".ttl";
+    public static final String MAX_SIZE = "portofino.cache.max.size";
+    public static final long DEFAULT_MAX_SIZE = 10000;
+
+    @Override
+    public void start(Settings settings, Properties properties) throws CacheException {
+        this.settings = settings;
+        if(manager != null) {
+            return;
+        }
+        //Cache manager names are global to the JVM
+        String name = ConfigurationHelper.getString(CACHE_MANAGER_NAME, properties, "portofino") +
+                      "@" + Integer.toHexString(System.identityHashCode(this));
+        long maxSize = ConfigurationHelper.getLong(MAX_SIZE, properties, (int) DEFAULT_MAX_SIZE);
+        net.sf.ehcache.config.Configuration configuration = new net.sf.ehcache.config.Configuration();
+        configuration.setName(name);
+        configuration.setUpdateCheck(false);
+        configuration.defaultCache(new CacheConfiguration("default", (int) maxSize));
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith(REGION_PROPERTY_PREFIX) && key.endsWith(TIME_TO_LIVE_SUFFIX)) {
+                String region = key.substring(
+                        REGION_PROPERTY_PREFIX.length(), key.length() - TIME_TO_LIVE_SUFFIX.length());
+                configuration.addCache(new CacheConfiguration(region, (int) maxSize)
+                        .timeToLiveSeconds(ConfigurationHelper.getLong(key, properties, 0)));
+            }
+        }
+        try {
+            manager = new CacheManager(configuration);
+            mbeanRegistrationHelper.registerMBean(manager, properties);
+        } catch (net.sf.ehcache.CacheException e) {
+            throw new CacheException(e);
+        }
+    }
+
+    /**
+     * @return the statistics of each region, sorted by region name.
+     */
+    public Map<String, CacheStats> getStatistics() {
+        CacheManager manager = this.manager;
+        if(manager == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, CacheStats> statistics = new TreeMap<String, CacheStats>();
+        for(String name : manager.getCacheNames()) {
+            Ehcache cache = manager.getEhcache(name);
+            if(cache != null) {
+                statistics.put(name, new CacheStats(
+                        cache.getStatistics().cacheHitCount(), cache.getStatistics().cacheMissCount(),
+                        0, 0, 0, cache.getStatistics().cacheEvictedCount()));
+            }
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import java.sql.Connection;
+
+/**
+ * Setup of a read-only replica of a database. It keeps track of the replication lag, measured periodically in the
+ * background by {@link com.manydesigns.portofino.persistence.Persistence}, so that lagging or unreachable replicas
+ * can be skipped without probing them on the request thread.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class ReplicaDatabaseSetup extends HibernateDatabaseSetup {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    protected final ConnectionProvider connectionProvider;
+    protected volatile boolean reachable = true;
+    protected volatile Long lag;
+
+    public ReplicaDatabaseSetup(
+            Configuration configuration, SessionFactory sessionFactory, ConnectionProvider connectionProvider) {
+        super(configuration, sessionFactory);
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Tells whether this replica can serve reads, according to the last {@link #checkLag() check}.
+     * @param maxLag the maximum acceptable lag, in seconds.
+     * @return true if the replica is reachable and its lag is unknown or within the limit.
+     */
+    public boolean isAvailable(long maxLag) {
+        Long lag = this.lag;
+        return reachable && (lag == null || lag <= maxLag);
+    }
+
+    /**
+     * Measures the replication lag and whether the replica is reachable. Called periodically in the background.
+     */
+    public void checkLag() {
+        Connection connection = null;
+        try {
+            connection = connectionProvider.acquireConnection();
+            DatabasePlatform databasePlatform = connectionProvider.getDatabasePlatform();
+            if(databasePlatform instanceof AbstractDatabasePlatform) {
+                lag = ((AbstractDatabasePlatform) databasePlatform).getReplicationLag(connection);
+            } else {
+                lag = null;
+            }
+            reachable = true;
+            logger.debug("Replication lag of {}: {}s", connectionProvider, lag);
+        } catch (Exception e) {
+            reachable = false;
+            logger.warn("Replica " + connectionProvider.getDescription() + " is not reachable", e);
+        } finally {
+            if(connection != null) {
+                connectionProvider.releaseConnection(connection);
+            }
+        }
+    }
+
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public Long getLag() {
+        return lag;
+    }
+}
@@ -49,6 +49,9 @@ public class ColumnAccessor
 
     protected final Column column;
     protected final PropertyAccessor nestedPropertyAccessor;
+    //Generated entity class and index of the property in it, see CompactEntity
+    protected final Class entityClass;
+    protected final int entityPropertyIndex;
 
     public static final Logger logger =
             LoggerFactory.getLogger(ColumnAccessor.class);
@@ -60,9 +63,22 @@ public class ColumnAccessor
 
     public ColumnAccessor(Column column, boolean inPk, boolean autoGenerated,
                           PropertyAccessor nestedPropertyAccessor) {
+        this(column, inPk, autoGenerated, nestedPropertyAccessor, null, -1);
+    }
+
+    public ColumnAccessor(Column column, boolean inPk, boolean autoGenerated,
+                          Class entityClass, int entityPropertyIndex) {
+        this(column, inPk, autoGenerated, null, entityClass, entityPropertyIndex);
+    }
+
+    protected ColumnAccessor(Column column, boolean inPk, boolean autoGenerated,
+                             PropertyAccessor nestedPropertyAccessor,
+                             Class entityClass, int entityPropertyIndex) {
         super(column.getAnnotations());
         this.column = column;
         this.nestedPropertyAccessor = nestedPropertyAccessor;
+        this.entityClass = entityClass;
+        this.entityPropertyIndex = entityPropertyIndex;
 
         annotations.put(Required.class, new RequiredImpl(!column.isNullable()));
 
@@ -97,7 +113,9 @@ public class ColumnAccessor
     }
 
     public Object get(Object obj) {
-        if (nestedPropertyAccessor == null) {
+        if (entityPropertyIndex >= 0 && entityClass.isInstance(obj)) {
+            return ((CompactEntity) obj).getPropertyValue(entityPropertyIndex);
+        } else if (nestedPropertyAccessor == null) {
             return ((Map)obj).get(column.getActualPropertyName());
         } else {
             return nestedPropertyAccessor.get(obj);
@@ -105,7 +123,9 @@ public class ColumnAccessor
     }
 
     public void set(Object obj, Object value) {
-        if (nestedPropertyAccessor == null) {
+        if (entityPropertyIndex >= 0 && entityClass.isInstance(obj)) {
+            ((CompactEntity) obj).setPropertyValue(entityPropertyIndex, value);
+        } else if (nestedPropertyAccessor == null) {
             //noinspection unchecked
             ((Map)obj).put(column.getActualPropertyName(), value);
         } else {
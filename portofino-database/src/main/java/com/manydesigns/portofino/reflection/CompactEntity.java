@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.reflection;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Base class of the entity classes generated by {@link CompactEntityGenerator}. Each entity stores its properties in
+ * typed fields, rather than in a hash map, and exposes them by index; it still implements {@link Map} so that it can
+ * be used wherever a dynamic (map) entity is expected. As with Hibernate dynamic maps, the <code>$type$</code> key
+ * holds the entity name.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public abstract class CompactEntity extends AbstractMap<String, Object> implements Serializable {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final String TYPE_KEY = "$type$";
+
+    public abstract CompactEntityType getCompactEntityType();
+
+    public abstract Object getPropertyValue(int index);
+
+    public abstract void setPropertyValue(int index, Object value);
+
+    /**
+     * Copies a dynamic (map) entity, such as one built by custom code with the <code>$type$</code> key, into a new
+     * instance of a compact entity class. Hibernate maps tables with a compact entity class in POJO mode, so it
+     * rejects plain maps.
+     * @param entityClass the compact entity class.
+     * @param map the entity as a map.
+     * @return the new compact entity.
+     * @throws IllegalArgumentException if the map has keys that are not properties of the entity.
+     */
+    public static CompactEntity fromMap(Class<? extends CompactEntity> entityClass, Map<?, ?> map) {
+        CompactEntity entity;
+        try {
+            entity = entityClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Could not instantiate " + entityClass, e);
+        }
+        for(Map.Entry<?, ?> entry : map.entrySet()) {
+            if(!TYPE_KEY.equals(entry.getKey())) {
+                entity.put((String) entry.getKey(), entry.getValue());
+            }
+        }
+        return entity;
+    }
+
+    //**************************************************************************
+    // Map implementation
+    //**************************************************************************
+
+    @Override
+    public Object get(Object key) {
+        int index = getCompactEntityType().getIndex(key);
+        if(index >= 0) {
+            return getPropertyValue(index);
+        } else if(TYPE_KEY.equals(key)) {
+            return getCompactEntityType().getEntityName();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = getCompactEntityType().getIndex(key);
+        if(index >= 0) {
+            Object old = getPropertyValue(index);
+            setPropertyValue(index, value);
+            return old;
+        } else if(TYPE_KEY.equals(key)) {
+            return getCompactEntityType().getEntityName();
+        } else {
+            throw new IllegalArgumentException(
+                    "Entity " + getCompactEntityType().getEntityName() + " has no property " + key);
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = getCompactEntityType().getIndex(key);
+        if(index >= 0) {
+            Object old = getPropertyValue(index);
+            setPropertyValue(index, null);
+            return old;
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getCompactEntityType().getIndex(key) >= 0 || TYPE_KEY.equals(key);
+    }
+
+    @Override
+    public int size() {
+        return getCompactEntityType().getPropertyCount() + 1;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    int next = 0;
+
+                    public boolean hasNext() {
+                        return next <= getCompactEntityType().getPropertyCount();
+                    }
+
+                    public Entry<String, Object> next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++;
+                        if(index == getCompactEntityType().getPropertyCount()) {
+                            return new SimpleImmutableEntry<String, Object>(
+                                    TYPE_KEY, getCompactEntityType().getEntityName());
+                        }
+                        return new PropertyEntry(index);
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactEntity.this.size();
+            }
+        };
+    }
+
+    protected class PropertyEntry implements Entry<String, Object> {
+        protected final int index;
+
+        public PropertyEntry(int index) {
+            this.index = index;
+        }
+
+        public String getKey() {
+            return getCompactEntityType().getPropertyName(index);
+        }
+
+        public Object getValue() {
+            return getPropertyValue(index);
+        }
+
+        public Object setValue(Object value) {
+            Object old = getPropertyValue(index);
+            setPropertyValue(index, value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Entry)) {
+                return false;
+            }
+            Entry e = (Entry) o;
+            Object value = getValue();
+            return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.reflection;
+
+import com.manydesigns.portofino.model.database.*;
+import javassist.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a {@link CompactEntity} subclass for each table of a database that is not mapped to a Java class. The
+ * generated class has one typed field per column and per relationship, getters and setters for Hibernate, and
+ * indexed accessors used by {@link ColumnAccessor}. Getters and setters are named "get"/"set" followed by the exact
+ * property name, which Hibernate accepts regardless of capitalization.<br>
+ * Classes are defined in a new class loader per generator, so a new model can be mapped to new classes with the
+ * same names; the class loader must be the context class loader when Hibernate builds the session factory.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class CompactEntityGenerator {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    public static final String PACKAGE_PREFIX = "portofino.entities.";
+
+    protected final EntityClassLoader classLoader;
+    protected final ClassPool classPool;
+
+    public static final Logger logger = LoggerFactory.getLogger(CompactEntityGenerator.class);
+
+    public CompactEntityGenerator(ClassLoader parent) {
+        classLoader = new EntityClassLoader(parent);
+        classPool = new ClassPool(true);
+        classPool.appendClassPath(new LoaderClassPath(CompactEntity.class.getClassLoader()));
+        classPool.appendClassPath(new LoaderClassPath(parent));
+    }
+
+    /**
+     * Generates the entity classes of the tables of a database that are not mapped to a Java class, and stores them
+     * in the tables (see {@link Table#getActualEntityClass()}). Tables whose class cannot be generated keep using
+     * dynamic (map) entities.
+     */
+    public void generate(Database database) {
+        for(Schema schema : database.getSchemas()) {
+            for(Table table : schema.getTables()) {
+                if(table.getJavaClass() != null || table.getPrimaryKey() == null) {
+                    continue;
+                }
+                try {
+                    table.setActualEntityClass(generate(database, table));
+                } catch (Exception e) {
+                    logger.warn("Could not generate entity class for table " + table.getQualifiedName() +
+                                ", using dynamic entities", e);
+                }
+            }
+        }
+    }
+
+    public Class<?> generate(Database database, Table table) throws Exception {
+        Map<String, Class> properties = getProperties(table);
+        String className = PACKAGE_PREFIX + toIdentifier(database.getDatabaseName()) + "." + table.getActualEntityName();
+        CtClass ctClass = classPool.makeClass(className, classPool.get(CompactEntity.class.getName()));
+        ctClass.addField(CtField.make(
+                "public static " + CompactEntityType.class.getName() + " " + CompactEntityType.TYPE_FIELD + ";",
+                ctClass));
+        ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+        ctClass.addMethod(CtNewMethod.make(
+                "public " + CompactEntityType.class.getName() + " getCompactEntityType() { return " +
+                CompactEntityType.TYPE_FIELD + "; }", ctClass));
+
+        StringBuilder getValue = new StringBuilder("public Object getPropertyValue(int index) { switch(index) {");
+        StringBuilder setValue =
+                new StringBuilder("public void setPropertyValue(int index, Object value) { switch(index) {");
+        int index = 0;
+        for(Map.Entry<String, Class> property : properties.entrySet()) {
+            String name = property.getKey();
+            String type = getSourceName(property.getValue());
+            String field = "p" + index;
+            ctClass.addField(CtField.make("private " + type + " " + field + ";", ctClass));
+            ctClass.addMethod(CtNewMethod.make(
+                    "public " + type + " get" + name + "() { return " + field + "; }", ctClass));
+            ctClass.addMethod(CtNewMethod.make(
+                    "public void set" + name + "(" + type + " value) { " + field + " = value; }", ctClass));
+            getValue.append("case ").append(index).append(": return ").append(field).append(";");
+            setValue.append("case ").append(index).append(": ")
+                    .append(field).append(" = (").append(type).append(") value; return;");
+            index++;
+        }
+        getValue.append("default: throw new IndexOutOfBoundsException(String.valueOf(index)); } }");
+        setValue.append("default: throw new IndexOutOfBoundsException(String.valueOf(index)); } }");
+        ctClass.addMethod(CtNewMethod.make(getValue.toString(), ctClass));
+        ctClass.addMethod(CtNewMethod.make(setValue.toString(), ctClass));
+
+        byte[] bytecode = ctClass.toBytecode();
+        ctClass.detach();
+        Class<?> entityClass = classLoader.defineEntityClass(className, bytecode);
+        entityClass.getField(CompactEntityType.TYPE_FIELD).set(null, new CompactEntityType(
+                table.getActualEntityName(), properties.keySet().toArray(new String[properties.size()])));
+        logger.debug("Generated entity class {} with {} properties", className, properties.size());
+        return entityClass;
+    }
+
+    /**
+     * Computes the properties of the entities of a table: its columns, followed by the many-to-one and one-to-many
+     * relationships, in the order in which they appear in the model.
+     * @throws IllegalArgumentException if a property would clash with a method of {@link CompactEntity}.
+     */
+    protected Map<String, Class> getProperties(Table table) {
+        Map<String, Class> properties = new LinkedHashMap<String, Class>();
+        for(Column column : table.getColumns()) {
+            Class type = column.getActualJavaType();
+            if(type == null || type.isPrimitive()) {
+                type = Object.class;
+            }
+            addProperty(properties, column.getActualPropertyName(), type);
+        }
+        for(ForeignKey foreignKey : table.getForeignKeys()) {
+            addProperty(properties, foreignKey.getActualOnePropertyName(), Object.class);
+        }
+        for(ForeignKey foreignKey : table.getOneToManyRelationships()) {
+            addProperty(properties, foreignKey.getActualManyPropertyName(), List.class);
+        }
+        return properties;
+    }
+
+    protected void addProperty(Map<String, Class> properties, String name, Class type) {
+        if(name == null || properties.containsKey(name)) {
+            return;
+        }
+        for(java.lang.reflect.Method method : CompactEntity.class.getMethods()) {
+            if(method.getName().equals("get" + name) || method.getName().equals("set" + name)) {
+                throw new IllegalArgumentException("Property " + name + " clashes with method " + method);
+            }
+        }
+        properties.put(name, type);
+    }
+
+    protected static String getSourceName(Class type) {
+        if(type.isArray()) {
+            return getSourceName(type.getComponentType()) + "[]";
+        }
+        return type.getName().replace('$', '.');
+    }
+
+    protected static String toIdentifier(String name) {
+        StringBuilder sb = new StringBuilder();
+        for(char c : name.toCharArray()) {
+            sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if(sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString();
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    protected static class EntityClassLoader extends ClassLoader {
+        public EntityClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public synchronized Class<?> defineEntityClass(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.reflection;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Describes the properties of a class generated by {@link CompactEntityGenerator}: their names and the indexes that
+ * {@link CompactEntity#getPropertyValue(int)} and {@link CompactEntity#setPropertyValue(int, Object)} accept.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class CompactEntityType {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    /**
+     * The name of the static field that holds the type in generated classes.
+     */
+    public static final String TYPE_FIELD = "ENTITY_TYPE";
+
+    protected final String entityName;
+    protected final String[] propertyNames;
+    protected final Map<String, Integer> indexes;
+
+    public CompactEntityType(String entityName, String[] propertyNames) {
+        this.entityName = entityName;
+        this.propertyNames = propertyNames.clone();
+        indexes = new HashMap<String, Integer>(propertyNames.length * 2);
+        for(int i = 0; i < propertyNames.length; i++) {
+            indexes.put(propertyNames[i], i);
+        }
+    }
+
+    /**
+     * Returns the type of a generated entity class.
+     * @param entityClass the class.
+     * @return the type, or null if the class was not generated by {@link CompactEntityGenerator}.
+     */
+    public static CompactEntityType forClass(Class<?> entityClass) {
+        if(entityClass == null || !CompactEntity.class.isAssignableFrom(entityClass)) {
+            return null;
+        }
+        try {
+            return (CompactEntityType) entityClass.getField(TYPE_FIELD).get(null);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Not a generated entity class: " + entityClass, e);
+        }
+    }
+
+    /**
+     * Returns the index of a property.
+     * @return the index, or -1 if there's no such property.
+     */
+    public int getIndex(Object propertyName) {
+        Integer index = indexes.get(propertyName);
+        return index != null ? index : -1;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public int getPropertyCount() {
+        return propertyNames.length;
+    }
+
+    public String getPropertyName(int index) {
+        return propertyNames[index];
+    }
+}
@@ -55,6 +55,8 @@ public class TableAccessor extends AbstractAnnotatedAccessor implements ClassAcc
     protected final ColumnAccessor[] columnAccessors;
     protected final ColumnAccessor[] keyColumnAccessors;
     protected ClassAccessor javaClassAccessor = null;
+    protected final Class entityClass;
+    protected final CompactEntityType entityType;
 
     public final static Logger logger =
             LoggerFactory.getLogger(TableAccessor.class);
@@ -75,6 +77,8 @@ public class TableAccessor extends AbstractAnnotatedAccessor implements ClassAcc
         if (clazz != null) {
             javaClassAccessor = JavaClassAccessor.getClassAccessor(clazz);
         }
+        entityClass = table.getActualEntityClass();
+        entityType = CompactEntityType.forClass(entityClass);
 
         this.table = table;
         List<Column> columns = table.getColumns();
@@ -108,9 +112,13 @@ public class TableAccessor extends AbstractAnnotatedAccessor implements ClassAcc
             }
 
             boolean autoGenerated = inPk && (pk.getPrimaryKeyColumns().get(0).getGenerator()!=null);
-            ColumnAccessor columnAccessor =
-                    new ColumnAccessor(current,
-                            inPk, autoGenerated, nestedPropertyAccessor);
+            ColumnAccessor columnAccessor;
+            if (entityType != null && nestedPropertyAccessor == null) {
+                columnAccessor = new ColumnAccessor(current, inPk, autoGenerated, entityClass,
+                        entityType.getIndex(current.getActualPropertyName()));
+            } else {
+                columnAccessor = new ColumnAccessor(current, inPk, autoGenerated, nestedPropertyAccessor);
+            }
             columnAccessors[i] = columnAccessor;
             i++;
         }
@@ -138,7 +146,7 @@ public class TableAccessor extends AbstractAnnotatedAccessor implements ClassAcc
     @Override
     public Class<?> getType() {
         if (javaClassAccessor == null) {
-            return Map.class;
+            return entityClass != null ? entityClass : Map.class;
         } else {
             return javaClassAccessor.getType();
         }
@@ -166,7 +174,13 @@ public class TableAccessor extends AbstractAnnotatedAccessor implements ClassAcc
     }
 
     public Object newInstance() {
-        if (javaClassAccessor == null) {
+        if (entityClass != null && javaClassAccessor == null) {
+            try {
+                return entityClass.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Could not instantiate " + entityClass, e);
+            }
+        } else if (javaClassAccessor == null) {
             HashMap<String, Object> obj =  new HashMap<String, Object>();
             obj.put("$type$", table.getEntityName());
             return obj;
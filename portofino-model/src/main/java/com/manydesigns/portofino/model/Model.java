@@ -25,8 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.annotation.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -46,6 +45,9 @@ public class Model {
 
     protected final ArrayList<Database> databases;
 
+    //Name index, rebuilt by init
+    protected Map<String, Database> databasesByName = Collections.emptyMap();
+
     public static final Logger logger = LoggerFactory.getLogger(Model.class);
 
     //**************************************************************************
@@ -70,6 +72,13 @@ public class Model {
         new ResetVisitor().visit(rootObject);
         new InitVisitor(this).visit(rootObject);
         new LinkVisitor(this).visit(rootObject);
+        Map<String, Database> index = new HashMap<String, Database>();
+        for (Database database : databases) {
+            if(!index.containsKey(database.getDatabaseName())) {
+                index.put(database.getDatabaseName(), database);
+            }
+        }
+        databasesByName = Collections.unmodifiableMap(index);
     }
 
     //**************************************************************************
@@ -83,4 +92,11 @@ public class Model {
         return databases;
     }
 
+    /**
+     * Returns the databases indexed by name, as of the last call to {@link #init()}.
+     */
+    public Map<String, Database> getDatabasesByName() {
+        return databasesByName;
+    }
+
 }
\ No newline at end of file
@@ -29,8 +29,8 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.*;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -39,7 +39,7 @@ import java.util.List;
 * @author Alessio Stalla       - alessio.stalla@manydesigns.com
 */
 @XmlAccessorType(XmlAccessType.NONE)
-@XmlType(propOrder = {"databaseName","trueString","falseString","connectionProvider","schemas"})
+@XmlType(propOrder = {"databaseName","trueString","falseString","connectionProvider","replicas","schemas"})
 public class Database implements ModelObject {
     public static final String copyright =
             "Copyright (C) 2005-2017 ManyDesigns srl";
@@ -56,7 +56,15 @@ public class Database implements ModelObject {
     protected String falseString = null;
 
     protected ConnectionProvider connectionProvider;
+    protected final List<ConnectionProvider> replicaConnectionProviders;
 
+    //**************************************************************************
+    // Fields for wire-up
+    //**************************************************************************
+
+    protected Map<String, Schema> schemasByName = Collections.emptyMap();
+    //Filled by the tables as they compute their entity names
+    protected final Map<String, Table> tablesByEntityName = new ConcurrentHashMap<String, Table>();
     
     //**************************************************************************
     // Logging
@@ -70,6 +78,7 @@ public class Database implements ModelObject {
     //**************************************************************************
     public Database() {
         this.schemas = new ArrayList<Schema>();
+        this.replicaConnectionProviders = new ArrayList<ConnectionProvider>();
     }
 
     //**************************************************************************
@@ -82,13 +91,23 @@ public class Database implements ModelObject {
         return databaseName;
     }
 
-    public void reset() {}
+    public void reset() {
+        tablesByEntityName.clear();
+    }
 
     public void init(Model model) {
         assert databaseName != null;
     }
 
-    public void link(Model model) {}
+    public void link(Model model) {
+        Map<String, Schema> index = new HashMap<String, Schema>();
+        for (Schema schema : schemas) {
+            if(!index.containsKey(schema.getSchemaName())) {
+                index.put(schema.getSchemaName(), schema);
+            }
+        }
+        schemasByName = Collections.unmodifiableMap(index);
+    }
 
     public void visitChildren(ModelObjectVisitor visitor) {
         for (Schema schema : schemas) {
@@ -192,4 +211,35 @@ public class Database implements ModelObject {
     public void setConnectionProvider(ConnectionProvider connectionProvider) {
         this.connectionProvider = connectionProvider;
     }
+
+    /**
+     * Read-only replicas of this database. Requests that don't modify the database can be served by a replica
+     * instead of the primary connection provider. The configuration properties of a replica are read with the
+     * prefix <code>portofino.database.&lt;name&gt;.replica.&lt;index&gt;.</code>, where index is the position of
+     * the replica in this list, starting from 0.
+     * @return the replica connection providers.
+     */
+    public List<ConnectionProvider> getReplicaConnectionProviders() {
+        return replicaConnectionProviders;
+    }
+
+    //Returns null when there are no replicas, so that JAXB does not write an empty element
+    @XmlElementWrapper(name="replicas")
+    @XmlElements({
+        @XmlElement(name="jdbcConnection", type=JdbcConnectionProvider.class),
+        @XmlElement(name="jndiConnection", type=JndiConnectionProvider.class)
+    })
+    protected List<ConnectionProvider> getReplicas() {
+        return replicaConnectionProviders.isEmpty() ? null : replicaConnectionProviders;
+    }
+
+    protected void setReplicas(List<ConnectionProvider> replicas) {
+        if(replicas == replicaConnectionProviders) {
+            return;
+        }
+        replicaConnectionProviders.clear();
+        if(replicas != null) {
+            replicaConnectionProviders.addAll(replicas);
+        }
+    }
 }
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -104,8 +105,15 @@ public class DatabaseLogic {
     // Search objects of a certain kind
     //**************************************************************************
 
+    // Lookups by exact name use the indexes built by Model.init. Objects added to the model after init are not
+    // indexed yet, so a lookup that misses the index falls back to a linear scan.
+
     public static @Nullable Database findDatabaseByName(
             Model model, String databaseName) {
+        Database indexed = model.getDatabasesByName().get(databaseName);
+        if (indexed != null && databaseName.equals(indexed.getDatabaseName())) {
+            return indexed;
+        }
         for (Database database : model.getDatabases()) {
             if (database.getDatabaseName().equals(databaseName)) {
                 return database;
@@ -117,6 +125,10 @@ public class DatabaseLogic {
 
     public static @Nullable Schema findSchemaByName(
             Database database, String schemaName) {
+        Schema indexed = database.schemasByName.get(schemaName);
+        if (indexed != null && schemaName.equals(indexed.getSchemaName())) {
+            return indexed;
+        }
         for (Schema schema : database.getSchemas()) {
             if (schema.getSchemaName().equals(schemaName)) {
                 return schema;
@@ -157,6 +169,10 @@ public class DatabaseLogic {
     }
 
     public static @Nullable Table findTableByName(Schema schema, String tableName) {
+        Table indexed = schema.tablesByName.get(tableName);
+        if (indexed != null && tableName.equals(indexed.getTableName())) {
+            return indexed;
+        }
         for (Table table : schema.getTables()) {
             if (table.getTableName().equals(tableName)) {
                 return table;
@@ -178,6 +194,10 @@ public class DatabaseLogic {
 
     public static @Nullable Column findColumnByName(
             Table table, String columnName) {
+        Column indexed = table.columnsByName.get(columnName);
+        if (indexed != null && columnName.equals(indexed.getColumnName())) {
+            return indexed;
+        }
         for (Column column : table.getColumns()) {
             if (column.getColumnName().equals(columnName)) {
                 return column;
@@ -199,6 +219,10 @@ public class DatabaseLogic {
     }
 
     public static Column findColumnByPropertyName(Table table, String propertyName) {
+        Column indexed = table.columnsByPropertyName.get(propertyName);
+        if (indexed != null && propertyName.equals(indexed.getActualPropertyName())) {
+            return indexed;
+        }
         for (Column column : table.getColumns()) {
             if (column.getActualPropertyName().equals(propertyName)) {
                 return column;
@@ -212,11 +236,7 @@ public class DatabaseLogic {
             Model model, String databaseName, String schemaName, String tableName, String columnName) {
         Table table = findTableByName(model, databaseName, schemaName, tableName);
         if (table != null) {
-            for (Column column : table.getColumns()) {
-                if (column.getColumnName().equals(columnName)) {
-                    return column;
-                }
-            }
+            return findColumnByName(table, columnName);
         }
         logger.debug("Column not found: {}", columnName);
         return null;
@@ -232,17 +252,15 @@ public class DatabaseLogic {
     }
 
     public static Table findTableByEntityName(Database database, String entityName) {
-        for(Schema schema : database.getSchemas()) {
-            for(Table table : schema.getTables()) {
-                if(entityName.equals(table.getActualEntityName())) {
-                    return table;
-                }
-            }
-        }
-        return null;
+        //Entity names are only assigned by Table.init, which also indexes them, so the index is always complete
+        return database.tablesByEntityName.get(entityName);
     }
 
     public static ForeignKey findForeignKeyByName(Table table, String fkName) {
+        ForeignKey indexed = table.foreignKeysByName.get(fkName);
+        if (indexed != null && fkName.equals(indexed.getName())) {
+            return indexed;
+        }
         for (ForeignKey current : table.foreignKeys) {
             if (current.getName().equals(fkName)) {
                 return current;
@@ -263,6 +281,11 @@ public class DatabaseLogic {
     }
 
     public static ModelSelectionProvider findSelectionProviderByName(Table table, String selectionProviderName) {
+        ModelSelectionProvider indexed =
+                table.selectionProvidersByName.get(selectionProviderName.toLowerCase(Locale.ENGLISH));
+        if (indexed != null && selectionProviderName.equalsIgnoreCase(indexed.getName())) {
+            return indexed;
+        }
         for (ModelSelectionProvider current : table.selectionProviders) {
             if (current.getName().equalsIgnoreCase(selectionProviderName)) {
                 return current;
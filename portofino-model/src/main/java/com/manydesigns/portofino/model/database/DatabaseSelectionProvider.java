@@ -37,7 +37,7 @@ import java.util.List;
 * @author Alessio Stalla       - alessio.stalla@manydesigns.com
 */
 @XmlAccessorType(value = XmlAccessType.NONE)
-@XmlType(propOrder = {"name","toDatabase","references","hql", "sql"})
+@XmlType(propOrder = {"name","toDatabase","references","hql", "sql", "cacheable"})
 public class DatabaseSelectionProvider implements ModelSelectionProvider {
     public static final String copyright =
             "Copyright (C) 2005-2017 ManyDesigns srl";
@@ -48,6 +48,7 @@ public class DatabaseSelectionProvider implements ModelSelectionProvider {
     protected String toDatabase;
     protected String sql;
     protected String hql;
+    protected Boolean cacheable;
 
     protected Table fromTable;
 
@@ -152,6 +153,21 @@ public class DatabaseSelectionProvider implements ModelSelectionProvider {
         this.hql = hql;
     }
 
+    /**
+     * Whether the results of the HQL query are kept in the Hibernate query cache, which is enabled for the target
+     * database if any of its selection providers is cacheable. Only the identifiers of the entities in the results
+     * are cached: unless their table is also cached (see the Cached annotation), the entities are then loaded one
+     * by one from the database. Queries selecting scalar values don't have this limitation.
+     */
+    @XmlAttribute(required = false)
+    public Boolean getCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(Boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
     public Table getFromTable() {
         return fromTable;
     }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.model.database;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.mchange.v2.c3p0.DataSources;
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyVetoException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded pool of JDBC connections, backed by a c3p0 {@link PooledDataSource}. When all the connections are in
+ * use, threads wait up to the acquire timeout for one to be released. Connections are optionally tested before
+ * being handed out, and connections held longer than the leak detection threshold are closed by c3p0 and reported
+ * in the log together with the stack trace of the thread that acquired them.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class JdbcConnectionPool {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    /**
+     * Upper bounds, in milliseconds, of the buckets of the acquire latency histogram. The last bucket collects
+     * all the acquisitions slower than the last bound.
+     */
+    public static final long[] LATENCY_BUCKETS = { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+    protected final String url;
+    protected final int minSize;
+    protected final int maxSize;
+    protected final ComboPooledDataSource dataSource;
+    protected final AtomicLongArray acquireLatencies = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+    protected volatile boolean closed;
+
+    public static final Logger logger = LoggerFactory.getLogger(JdbcConnectionPool.class);
+
+    /**
+     * Creates a new pool.
+     * @param driver the class name of the JDBC driver.
+     * @param url the JDBC url.
+     * @param username the database user.
+     * @param password the password of the database user.
+     * @param minSize the number of connections the pool tries to keep open.
+     * @param maxSize the maximum number of connections, idle or in use.
+     * @param acquireTimeout how long, in milliseconds, to wait for a connection before giving up. 0 waits forever.
+     * @param testOnCheckout whether to test connections before handing them out.
+     * @param leakDetectionThreshold how long, in milliseconds, a connection can be used before it is closed and
+     *                               reported as a leak. 0 disables leak detection.
+     */
+    public JdbcConnectionPool(
+            String driver, String url, String username, String password, int minSize, int maxSize,
+            int acquireTimeout, boolean testOnCheckout, long leakDetectionThreshold) {
+        if(maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                    "Invalid pool size: min " + minSize + ", max " + maxSize);
+        }
+        this.url = url;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        dataSource = new ComboPooledDataSource();
+        try {
+            dataSource.setDriverClass(driver);
+        } catch (PropertyVetoException e) {
+            throw new IllegalArgumentException("Invalid driver: " + driver, e);
+        }
+        dataSource.setJdbcUrl(url);
+        dataSource.setUser(username);
+        dataSource.setPassword(password);
+        dataSource.setMinPoolSize(minSize);
+        dataSource.setInitialPoolSize(minSize);
+        dataSource.setMaxPoolSize(maxSize);
+        dataSource.setCheckoutTimeout(acquireTimeout);
+        dataSource.setTestConnectionOnCheckout(testOnCheckout);
+        if(leakDetectionThreshold > 0) {
+            //c3p0 measures the timeout in seconds
+            dataSource.setUnreturnedConnectionTimeout((int) ((leakDetectionThreshold + 999) / 1000));
+            dataSource.setDebugUnreturnedConnectionStackTraces(true);
+        }
+    }
+
+    //**************************************************************************
+    // Acquire/release
+    //**************************************************************************
+
+    /**
+     * Acquires a connection from the pool. Closing the returned connection gives it back to the pool.
+     * @return a connection.
+     * @throws SQLException if a connection cannot be opened, or none is released within the acquire timeout.
+     */
+    public Connection acquire() throws SQLException {
+        if(closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        long start = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        recordAcquireLatency((System.nanoTime() - start) / 1000000);
+        return connection;
+    }
+
+    /**
+     * Closes the pool and all of its connections.
+     */
+    public void close() {
+        closed = true;
+        try {
+            DataSources.destroy(dataSource);
+        } catch (SQLException e) {
+            logger.warn("Could not close the connection pool of " + url, e);
+        }
+    }
+
+    //**************************************************************************
+    // Metrics
+    //**************************************************************************
+
+    protected void recordAcquireLatency(long millis) {
+        int bucket = 0;
+        while(bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+            bucket++;
+        }
+        acquireLatencies.incrementAndGet(bucket);
+    }
+
+    //The statistics are read from c3p0; -1 means that they are not available, e.g. because the pool is closed
+
+    public int getActiveConnections() {
+        try {
+            return dataSource.getNumBusyConnectionsDefaultUser();
+        } catch (SQLException e) {
+            logger.debug("Could not read the number of active connections", e);
+            return -1;
+        }
+    }
+
+    public int getIdleConnections() {
+        try {
+            return dataSource.getNumIdleConnectionsDefaultUser();
+        } catch (SQLException e) {
+            logger.debug("Could not read the number of idle connections", e);
+            return -1;
+        }
+    }
+
+    public int getWaitingThreads() {
+        try {
+            return dataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+        } catch (SQLException e) {
+            logger.debug("Could not read the number of waiting threads", e);
+            return -1;
+        }
+    }
+
+    public long getAcquireTimeouts() {
+        try {
+            return dataSource.getNumFailedCheckoutsDefaultUser();
+        } catch (SQLException e) {
+            logger.debug("Could not read the number of failed checkouts", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the number of acquisitions per latency bucket, keyed by the upper bound of the bucket in
+     * milliseconds (e.g. "&lt;=5ms"). The last key collects the slowest acquisitions.
+     * @return the acquire latency histogram, in bucket order.
+     */
+    public Map<String, Long> getAcquireLatencyHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+        for(int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            histogram.put("<=" + LATENCY_BUCKETS[i] + "ms", acquireLatencies.get(i));
+        }
+        histogram.put(">" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms",
+                      acquireLatencies.get(LATENCY_BUCKETS.length));
+        return histogram;
+    }
+
+    /**
+     * Returns the underlying c3p0 data source, e.g. to read further statistics.
+     * @return the data source.
+     */
+    public PooledDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcConnectionPool[" + url + ", min: " + minSize + ", max: " + maxSize + "]";
+    }
+}
@@ -33,6 +33,7 @@ import javax.xml.bind.annotation.XmlType;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.text.MessageFormat;
+import java.util.List;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -58,6 +59,13 @@ public class JdbcConnectionProvider extends ConnectionProvider {
     protected Configuration configuration;
     protected String keyPrefix;
 
+    public static final String POOL_ENABLED = "pool.enabled";
+    public static final String POOL_MIN_SIZE = "pool.min.size";
+    public static final String POOL_MAX_SIZE = "pool.max.size";
+    public static final String POOL_ACQUIRE_TIMEOUT = "pool.acquire.timeout";
+    public static final String POOL_TEST_ON_CHECKOUT = "pool.test.on.checkout";
+    public static final String POOL_LEAK_DETECTION_THRESHOLD = "pool.leak.detection.threshold";
+
     //**************************************************************************
     // Fields (calcuated values)
     //**************************************************************************
@@ -65,6 +73,7 @@ public class JdbcConnectionProvider extends ConnectionProvider {
     protected String actualUrl;
     protected String actualUsername;
     protected String actualPassword;
+    protected JdbcConnectionPool pool;
 
     //**************************************************************************
     // Constructors
@@ -80,7 +89,7 @@ public class JdbcConnectionProvider extends ConnectionProvider {
 
     @Override
     public void init(DatabasePlatformsRegistry databasePlatformsRegistry) {
-        keyPrefix = "portofino.database." + getDatabase().getDatabaseName() + ".";
+        keyPrefix = computeKeyPrefix();
         configuration = databasePlatformsRegistry.getPortofinoConfiguration();
         if(url == null || url.equals(keyPrefix + "url")) {
             actualUrl = configuration.getString(keyPrefix + "url");
@@ -106,19 +115,69 @@ public class JdbcConnectionProvider extends ConnectionProvider {
         } else {
             actualPassword = password;
         }
+        closePool();
+        if(configuration.getBoolean(keyPrefix + POOL_ENABLED, false)) {
+            try {
+                Class.forName(driver);
+            } catch (ClassNotFoundException e) {
+                status = STATUS_ERROR;
+                throw new RuntimeException("Invalid connection provider for database " + getDatabase().getDatabaseName() + " - driver not found: " + driver, e);
+            }
+            pool = new JdbcConnectionPool(
+                    driver, actualUrl, actualUsername, actualPassword,
+                    configuration.getInt(keyPrefix + POOL_MIN_SIZE, 0),
+                    configuration.getInt(keyPrefix + POOL_MAX_SIZE, 10),
+                    configuration.getInt(keyPrefix + POOL_ACQUIRE_TIMEOUT, 30000),
+                    configuration.getBoolean(keyPrefix + POOL_TEST_ON_CHECKOUT, true),
+                    configuration.getLong(keyPrefix + POOL_LEAK_DETECTION_THRESHOLD, 0));
+            logger.info("Created connection pool for database {}: {}", getDatabase().getDatabaseName(), pool);
+        }
         super.init(databasePlatformsRegistry);
     }
 
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        closePool();
+    }
+
+    protected void closePool() {
+        if(pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    /**
+     * Computes the prefix of the keys of the configuration properties of this connection provider:
+     * <code>portofino.database.&lt;name&gt;.</code> for the primary connection of a database, and
+     * <code>portofino.database.&lt;name&gt;.replica.&lt;index&gt;.</code> for its replicas, so that a replica
+     * never picks up the URL, credentials or pool settings of the primary.
+     */
+    protected String computeKeyPrefix() {
+        String prefix = "portofino.database." + getDatabase().getDatabaseName() + ".";
+        List<ConnectionProvider> replicas = getDatabase().getReplicaConnectionProviders();
+        for(int i = 0; i < replicas.size(); i++) {
+            if(replicas.get(i) == this) {
+                return prefix + "replica." + i + ".";
+            }
+        }
+        return prefix;
+    }
+
     //**************************************************************************
     // Implementation of ConnectionProvider
     //**************************************************************************
 
     public String getDescription() {
         return MessageFormat.format(
-                "JDBC connection to URL: {0}", actualUrl);
+                pool != null ? "Pooled JDBC connection to URL: {0}" : "JDBC connection to URL: {0}", actualUrl);
     }
 
     public Connection acquireConnection() throws Exception {
+        if(pool != null) {
+            return pool.acquire();
+        }
         Class.forName(driver);
         return DriverManager.getConnection(actualUrl, actualUsername, actualPassword);
     }
@@ -167,6 +226,15 @@ public class JdbcConnectionProvider extends ConnectionProvider {
         this.password = password;
     }
 
+    /**
+     * Returns the connection pool, if pooling is enabled with the property
+     * <code>portofino.database.&lt;name&gt;.pool.enabled</code>.
+     * @return the pool, or null if connections are not pooled.
+     */
+    public JdbcConnectionPool getPool() {
+        return pool;
+    }
+
     public String getActualUrl() {
         return actualUrl;
     }
@@ -217,6 +285,7 @@ public class JdbcConnectionProvider extends ConnectionProvider {
                 .append("url", actualUrl)
                 .append("username", actualUsername)
                 .append("password", actualPassword)
+                .append("pool", pool)
                 .toString();
     }
 }
@@ -29,8 +29,7 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.*;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -54,6 +53,12 @@ public class Schema implements ModelObject {
 
     protected String schemaName;
     protected String catalog;
+
+    //**************************************************************************
+    // Fields for wire-up
+    //**************************************************************************
+
+    protected Map<String, Table> tablesByName = Collections.emptyMap();
     
     //**************************************************************************
     // Logging
@@ -98,7 +103,15 @@ public class Schema implements ModelObject {
         assert schemaName != null;
     }
 
-    public void link(Model model) {}
+    public void link(Model model) {
+        Map<String, Table> index = new HashMap<String, Table>();
+        for (Table table : tables) {
+            if(!index.containsKey(table.getTableName())) {
+                index.put(table.getTableName(), table);
+            }
+        }
+        tablesByName = Collections.unmodifiableMap(index);
+    }
 
     public void visitChildren(ModelObjectVisitor visitor) {
         for (Table table : tables) {
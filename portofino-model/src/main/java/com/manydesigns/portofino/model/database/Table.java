@@ -29,8 +29,7 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.*;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -70,8 +69,15 @@ public class Table implements ModelObject, Annotated {
 
     protected final List<ForeignKey> oneToManyRelationships;
     protected Class actualJavaClass;
+    //Generated class of the entities, when the table is not mapped to a Java class and compact entities are enabled
+    protected Class actualEntityClass;
     protected String actualEntityName;
     protected final List<String> syntheticPropertyNames = new ArrayList<String>();
+    protected Map<String, Column> columnsByName = Collections.emptyMap();
+    protected Map<String, Column> columnsByPropertyName = Collections.emptyMap();
+    protected Map<String, ForeignKey> foreignKeysByName = Collections.emptyMap();
+    //Keyed by lower case name, since selection providers are looked up ignoring case
+    protected Map<String, ModelSelectionProvider> selectionProvidersByName = Collections.emptyMap();
 
     //**************************************************************************
     // Logging
@@ -112,8 +118,12 @@ public class Table implements ModelObject, Annotated {
     }
 
     public void reset() {
+        if(actualEntityName != null && schema != null && schema.getDatabase() != null) {
+            schema.getDatabase().tablesByEntityName.remove(actualEntityName);
+        }
         actualEntityName = null;
         actualJavaClass = null;
+        actualEntityClass = null;
         oneToManyRelationships.clear();
     }
 
@@ -141,9 +151,41 @@ public class Table implements ModelObject, Annotated {
         }
 
         actualEntityName = calculatedEntityName;
+        database.tablesByEntityName.put(actualEntityName, this);
     }
 
-    public void link(Model model) {}
+    public void link(Model model) {
+        Map<String, Column> columnIndex = new HashMap<String, Column>();
+        Map<String, Column> propertyIndex = new HashMap<String, Column>();
+        for (Column column : columns) {
+            if(!columnIndex.containsKey(column.getColumnName())) {
+                columnIndex.put(column.getColumnName(), column);
+            }
+            if(!propertyIndex.containsKey(column.getActualPropertyName())) {
+                propertyIndex.put(column.getActualPropertyName(), column);
+            }
+        }
+        columnsByName = Collections.unmodifiableMap(columnIndex);
+        columnsByPropertyName = Collections.unmodifiableMap(propertyIndex);
+
+        Map<String, ForeignKey> foreignKeyIndex = new HashMap<String, ForeignKey>();
+        for (ForeignKey foreignKey : foreignKeys) {
+            if(!foreignKeyIndex.containsKey(foreignKey.getName())) {
+                foreignKeyIndex.put(foreignKey.getName(), foreignKey);
+            }
+        }
+        foreignKeysByName = Collections.unmodifiableMap(foreignKeyIndex);
+
+        Map<String, ModelSelectionProvider> selectionProviderIndex = new HashMap<String, ModelSelectionProvider>();
+        for (ModelSelectionProvider selectionProvider : selectionProviders) {
+            String name = selectionProvider.getName();
+            String key = name != null ? name.toLowerCase(Locale.ENGLISH) : null;
+            if(!selectionProviderIndex.containsKey(key)) {
+                selectionProviderIndex.put(key, selectionProvider);
+            }
+        }
+        selectionProvidersByName = Collections.unmodifiableMap(selectionProviderIndex);
+    }
 
     public void visitChildren(ModelObjectVisitor visitor) {
         for (Column column : columns) {
@@ -231,6 +273,14 @@ public class Table implements ModelObject, Annotated {
         return actualJavaClass;
     }
 
+    public Class getActualEntityClass() {
+        return actualEntityClass;
+    }
+
+    public void setActualEntityClass(Class actualEntityClass) {
+        this.actualEntityClass = actualEntityClass;
+    }
+
     @XmlElementWrapper(name="foreignKeys")
     @XmlElement(name = "foreignKey",
             type = ForeignKey.class)
@@ -22,12 +22,15 @@ package com.manydesigns.portofino.model.database.platforms;
 
 import com.manydesigns.portofino.model.database.Column;
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import org.apache.commons.dbutils.DbUtils;
 import org.hibernate.dialect.Dialect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -71,6 +74,8 @@ public abstract class AbstractDatabasePlatform implements DatabasePlatform {
     public static final String FK_NAME = "FK_NAME";
     public static final String FKTABLE_CAT = "FKTABLE_CAT";
     public static final String PKTABLE_CAT = "PKTABLE_CAT";
+    public static final String TYPE = "TYPE";
+    public static final String CARDINALITY = "CARDINALITY";
 
     //**************************************************************************
     // Fields
@@ -153,4 +158,63 @@ public abstract class AbstractDatabasePlatform implements DatabasePlatform {
     protected String getCatalogColumnName() {
         return TABLE_CATALOG;
     }
+
+    /**
+     * Estimates the number of rows in a table from the statistics maintained by the database, without scanning
+     * the table. The estimate can be arbitrarily stale, depending on when the statistics were last updated.
+     * This implementation reads the table cardinality that JDBC drivers report among the (approximate) index
+     * statistics; platforms with better sources of statistics should override it.
+     * @param connection the connection to use.
+     * @param table the table.
+     * @return the estimated number of rows, or null if no estimate is available.
+     * @throws SQLException if the statistics could not be read.
+     */
+    public Long getEstimatedRowCount(Connection connection, Table table) throws SQLException {
+        ResultSet rs = connection.getMetaData().getIndexInfo(
+                table.getSchema().getCatalog(), table.getSchemaName(), table.getTableName(), false, true);
+        try {
+            while(rs.next()) {
+                if(rs.getShort(TYPE) == DatabaseMetaData.tableIndexStatistic) {
+                    long cardinality = rs.getLong(CARDINALITY);
+                    return rs.wasNull() ? null : cardinality;
+                }
+            }
+        } finally {
+            DbUtils.closeQuietly(rs);
+        }
+        return null;
+    }
+
+    /**
+     * Measures how far behind its primary a replica database is.
+     * @param connection a connection to the replica.
+     * @return the replication lag in seconds, 0 if the database is not a replica, or null if the lag cannot be
+     * measured on this platform.
+     * @throws SQLException if the replication status could not be read.
+     */
+    public Long getReplicationLag(Connection connection) throws SQLException {
+        return null;
+    }
+
+    protected Long queryLong(Connection connection, String sql, Object... parameters)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        ResultSet rs = null;
+        try {
+            for(int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            rs = statement.executeQuery();
+            if(rs.next()) {
+                long count = rs.getLong(1);
+                if(!rs.wasNull() && count >= 0) {
+                    return count;
+                }
+            }
+            return null;
+        } finally {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(statement);
+        }
+    }
 }
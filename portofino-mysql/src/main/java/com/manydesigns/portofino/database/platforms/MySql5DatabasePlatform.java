@@ -21,13 +21,16 @@
 package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import org.apache.commons.dbutils.DbUtils;
 import org.hibernate.dialect.MySQLDialect;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -83,5 +86,30 @@ public class MySql5DatabasePlatform extends AbstractDatabasePlatform {
         }
         return schemaNames;
     }
-}
 
+    @Override
+    public Long getEstimatedRowCount(Connection connection, Table table) throws SQLException {
+        //Exact for MyISAM, estimated for InnoDB
+        return queryLong(connection,
+                "select TABLE_ROWS from information_schema.TABLES where TABLE_SCHEMA = ? and TABLE_NAME = ?",
+                table.getSchemaName(), table.getTableName());
+    }
+
+    @Override
+    public Long getReplicationLag(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet rs = null;
+        try {
+            rs = statement.executeQuery("SHOW SLAVE STATUS");
+            if(!rs.next()) {
+                return 0L; //Not a replica
+            }
+            long lag = rs.getLong("Seconds_Behind_Master");
+            //Seconds_Behind_Master is null when replication is stopped
+            return rs.wasNull() ? Long.MAX_VALUE : lag;
+        } finally {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(statement);
+        }
+    }
+}
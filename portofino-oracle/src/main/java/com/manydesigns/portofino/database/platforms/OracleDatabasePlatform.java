@@ -21,9 +21,11 @@
 package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import org.hibernate.dialect.Oracle9iDialect;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -79,4 +81,12 @@ public class OracleDatabasePlatform extends AbstractDatabasePlatform {
         }
         return schemaNames;
     }
+
+    @Override
+    public Long getEstimatedRowCount(Connection connection, Table table) throws SQLException {
+        //NUM_ROWS is null if statistics have never been gathered
+        return queryLong(connection,
+                "select NUM_ROWS from ALL_TABLES where OWNER = ? and TABLE_NAME = ?",
+                table.getSchemaName(), table.getTableName());
+    }
 }
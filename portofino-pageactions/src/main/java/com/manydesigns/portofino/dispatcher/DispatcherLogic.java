@@ -20,6 +20,7 @@
 
 package com.manydesigns.portofino.dispatcher;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -29,8 +30,10 @@ import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.options.DefaultSelectionProvider;
 import com.manydesigns.elements.options.SelectionProvider;
 import com.manydesigns.elements.util.ElementsFileUtils;
+import com.manydesigns.elements.xml.JAXBContextRegistry;
 import com.manydesigns.portofino.actions.safemode.SafeModeAction;
 import com.manydesigns.portofino.di.Injections;
+import com.manydesigns.portofino.logic.SecurityLogic;
 import com.manydesigns.portofino.pageactions.PageActionLogic;
 import com.manydesigns.portofino.pages.ChildPage;
 import com.manydesigns.portofino.pages.Page;
@@ -140,11 +143,11 @@ public class DispatcherLogic {
         }
     }
 
-    protected static final JAXBContext pagesJaxbContext;
+    protected static final JAXBContextRegistry.PooledContext pagesJaxbContext;
 
     static {
         try {
-            pagesJaxbContext = JAXBContext.newInstance(Page.class.getPackage().getName());
+            pagesJaxbContext = JAXBContextRegistry.get(Page.class);
         } catch (JAXBException e) {
             throw new Error("Can't instantiate pages jaxb context", e);
         }
@@ -169,10 +172,16 @@ public class DispatcherLogic {
      */
     public static File savePage(File directory, Page page) throws Exception {
         File pageFile = getPageFile(directory);
-        Marshaller marshaller = pagesJaxbContext.createMarshaller();
-        marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshaller.marshal(page, pageFile);
+        Marshaller marshaller = pagesJaxbContext.acquireMarshaller();
+        try {
+            marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            marshaller.marshal(page, pageFile);
+        } finally {
+            pagesJaxbContext.release(marshaller);
+        }
         pageCache.invalidate(pageFile);
+        clearSubpageCache();
+        SecurityLogic.clearPermissionsCache();
         return pageFile;
     }
 
@@ -181,6 +190,13 @@ public class DispatcherLogic {
     public static final String PAGE_CACHE_CHECK_FREQUENCY = "page.cache.check.frequency";
     public static final String CONFIGURATION_CACHE_SIZE = "configuration.cache.size";
     public static final String CONFIGURATION_CACHE_CHECK_FREQUENCY = "configuration.cache.check.frequency";
+    public static final String SUBPAGE_CACHE_SIZE = "dispatch.cache.size";
+    public static final String SUBPAGE_CACHE_CHECK_FREQUENCY = "dispatch.cache.check.frequency";
+    /**
+     * If true, the pages directory is watched for changes (see {@link PagesWatcher}); check frequencies can then be
+     * set to 0 to disable polling.
+     */
+    public static final String PAGE_CACHE_WATCH = "page.cache.watch";
 
     public static void init(Configuration portofinoConfiguration) {
         int maxSize, refreshCheckFrequency;
@@ -192,6 +208,10 @@ public class DispatcherLogic {
         refreshCheckFrequency =
                 portofinoConfiguration.getInt(CONFIGURATION_CACHE_CHECK_FREQUENCY, 5);
         initConfigurationCache(maxSize, refreshCheckFrequency);
+        maxSize = portofinoConfiguration.getInt(SUBPAGE_CACHE_SIZE, 1000);
+        refreshCheckFrequency =
+                portofinoConfiguration.getInt(SUBPAGE_CACHE_CHECK_FREQUENCY, 5);
+        initSubpageCache(maxSize, refreshCheckFrequency);
     }
 
     protected static class FileCacheEntry<T> {
@@ -223,11 +243,23 @@ public class DispatcherLogic {
 
     protected static LoadingCache<File, FileCacheEntry<Page>> pageCache;
 
+    /**
+     * Creates a cache builder that checks entries for changes every refreshCheckFrequency seconds, or never if
+     * refreshCheckFrequency is not positive.
+     */
+    protected static CacheBuilder<Object, Object> newCacheBuilder(int maxSize, int refreshCheckFrequency) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize);
+        if(refreshCheckFrequency > 0) {
+            builder.refreshAfterWrite(refreshCheckFrequency, TimeUnit.SECONDS);
+        } else {
+            logger.info("Polling for changes disabled, maximum size: {}", maxSize);
+        }
+        return builder;
+    }
+
     public static void initPageCache(int maxSize, int refreshCheckFrequency) {
         pageCache =
-                CacheBuilder.newBuilder()
-                        .maximumSize(maxSize)
-                        .refreshAfterWrite(refreshCheckFrequency, TimeUnit.SECONDS)
+                newCacheBuilder(maxSize, refreshCheckFrequency)
                         .build(new CacheLoader<File, FileCacheEntry<Page>>() {
 
                             @Override
@@ -275,9 +307,7 @@ public class DispatcherLogic {
 
     public static void initConfigurationCache(int maxSize, int refreshCheckFrequency) {
         configurationCache =
-                CacheBuilder.newBuilder()
-                        .maximumSize(maxSize)
-                        .refreshAfterWrite(refreshCheckFrequency, TimeUnit.SECONDS)
+                newCacheBuilder(maxSize, refreshCheckFrequency)
                         .build(new CacheLoader<File, ConfigurationCacheEntry>() {
 
                             @Override
@@ -322,8 +352,94 @@ public class DispatcherLogic {
                         });
     }
 
+    /**
+     * Resolved subpages, shared by all requests. An entry holds everything that {@link #getSubpage(Configuration,
+     * PageInstance, String)} computes from the file system, so that only the page instance and the action bean have
+     * to be created for each request. Entries are evicted when a page or a configuration is saved, and expire after
+     * the check frequency to pick up changes made outside the application.
+     */
+    protected static Cache<File, SubpageCacheEntry> subpageCache;
+
+    protected static class SubpageCacheEntry {
+        public final Page page;
+        public final Class<? extends PageAction> actionClass;
+        public final Object configuration;
+
+        public SubpageCacheEntry(Page page, Class<? extends PageAction> actionClass, Object configuration) {
+            this.page = page;
+            this.actionClass = actionClass;
+            this.configuration = configuration;
+        }
+    }
+
+    public static void initSubpageCache(int maxSize, int refreshCheckFrequency) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize);
+        if(refreshCheckFrequency > 0) {
+            builder.expireAfterWrite(refreshCheckFrequency, TimeUnit.SECONDS);
+        }
+        subpageCache = builder.build();
+    }
+
+    /**
+     * Updates the caches after a file in the pages directory has been created, modified or deleted. If the file is
+     * a cached page or configuration, it is reloaded immediately, on the calling thread.
+     * @param file the file that changed.
+     */
+    public static void fileChanged(File file) {
+        clearSubpageCache();
+        SecurityLogic.clearPermissionsCache();
+        if(pageCache != null && pageCache.getIfPresent(file) != null) {
+            if(!file.exists()) {
+                logger.debug("Page {} deleted", file);
+                pageCache.invalidate(file);
+                return;
+            }
+            logger.debug("Reloading page {}", file);
+            try {
+                pageCache.put(file, new FileCacheEntry<Page>(loadPage(file), file.lastModified(), false));
+            } catch (Throwable t) {
+                logger.error("Could not reload cached page from " + file.getAbsolutePath(), t);
+                pageCache.put(file, new FileCacheEntry<Page>(null, file.lastModified(), true));
+            }
+        }
+        ConfigurationCacheEntry entry = configurationCache != null ? configurationCache.getIfPresent(file) : null;
+        if(entry != null) {
+            if(!file.exists() || entry.error) {
+                logger.debug("Configuration {} deleted or in error state", file);
+                configurationCache.invalidate(file);
+                return;
+            }
+            logger.debug("Reloading configuration {}", file);
+            try {
+                Object newConf = loadConfiguration(file, entry.configurationClass);
+                configurationCache.put(file, new ConfigurationCacheEntry(
+                        newConf, newConf.getClass(), file.lastModified(), false));
+            } catch (Throwable t) {
+                logger.error("Could not reload cached configuration from " + file.getAbsolutePath(), t);
+                configurationCache.invalidate(file);
+            }
+        }
+    }
+
+    /**
+     * Empties the page, configuration and subpage caches.
+     */
+    public static void clearCaches() {
+        pageCache.invalidateAll();
+        configurationCache.invalidateAll();
+        clearSubpageCache();
+        SecurityLogic.clearPermissionsCache();
+    }
+
+    public static void clearSubpageCache() {
+        if(subpageCache != null) {
+            subpageCache.invalidateAll();
+        }
+    }
+
     public static void clearConfigurationCache() {
         configurationCache.invalidateAll();
+        clearSubpageCache();
     }
 
     /**
@@ -339,6 +455,7 @@ public class DispatcherLogic {
             }
         }
         configurationCache.invalidateAll(keysToInvalidate);
+        clearSubpageCache();
     }
 
     protected static File getPageFile(File directory) {
@@ -357,8 +474,12 @@ public class DispatcherLogic {
     }
 
     public static Page loadPage(InputStream inputStream) throws JAXBException {
-        Unmarshaller unmarshaller = pagesJaxbContext.createUnmarshaller();
-        return (Page) unmarshaller.unmarshal(inputStream);
+        Unmarshaller unmarshaller = pagesJaxbContext.acquireUnmarshaller();
+        try {
+            return (Page) unmarshaller.unmarshal(inputStream);
+        } finally {
+            pagesJaxbContext.release(unmarshaller);
+        }
     }
 
     public static Page getPage(File directory) throws PageNotActiveException {
@@ -376,13 +497,17 @@ public class DispatcherLogic {
     }
 
     public static File saveConfiguration(File directory, Object configuration) throws Exception {
-        String configurationPackage = configuration.getClass().getPackage().getName();
-        JAXBContext jaxbContext = JAXBContext.newInstance(configurationPackage);
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        JAXBContextRegistry.PooledContext jaxbContext = JAXBContextRegistry.get(configuration.getClass());
+        Marshaller marshaller = jaxbContext.acquireMarshaller();
         File configurationFile = new File(directory, "configuration.xml");
-        marshaller.marshal(configuration, configurationFile);
+        try {
+            marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            marshaller.marshal(configuration, configurationFile);
+        } finally {
+            jaxbContext.release(marshaller);
+        }
         configurationCache.invalidate(configurationFile);
+        clearSubpageCache();
         return configurationFile;
     }
 
@@ -428,10 +553,13 @@ public class DispatcherLogic {
             return null;
         }
         Object configuration;
-        String configurationPackage = configurationClass.getPackage().getName();
-        JAXBContext jaxbContext = JAXBContext.newInstance(configurationPackage);
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        configuration = unmarshaller.unmarshal(new StreamSource(inputStream), configurationClass);
+        JAXBContextRegistry.PooledContext jaxbContext = JAXBContextRegistry.get(configurationClass);
+        Unmarshaller unmarshaller = jaxbContext.acquireUnmarshaller();
+        try {
+            configuration = unmarshaller.unmarshal(new StreamSource(inputStream), configurationClass);
+        } finally {
+            jaxbContext.release(unmarshaller);
+        }
         if(configuration instanceof JAXBElement) {
             configuration = ((JAXBElement) configuration).getValue();
         }
@@ -513,6 +641,24 @@ public class DispatcherLogic {
             throws PageNotActiveException {
         File currentDirectory = parentPageInstance.getChildrenDirectory();
         File childDirectory = new File(currentDirectory, pathFragment);
+        SubpageCacheEntry entry = subpageCache.getIfPresent(childDirectory);
+        if(entry != null) {
+            try {
+                PageAction pageAction = entry.actionClass.newInstance();
+                PageInstance pageInstance =
+                    new PageInstance(parentPageInstance, childDirectory, entry.page, entry.actionClass);
+                pageInstance.setActionBean(pageAction);
+                if(entry.configuration != null) {
+                    pageInstance.setConfiguration(entry.configuration);
+                    pageAction.setPageInstance(pageInstance);
+                } else {
+                    configurePageAction(pageAction, pageInstance);
+                }
+                return pageAction;
+            } catch (Exception e) {
+                throw new PageNotActiveException(e);
+            }
+        }
         if(childDirectory.isDirectory() && !PageInstance.DETAIL.equals(childDirectory.getName())) {
             ChildPage childPage = null;
             for(ChildPage candidate : parentPageInstance.getLayout().getChildPages()) {
@@ -534,6 +680,8 @@ public class DispatcherLogic {
                     new PageInstance(parentPageInstance, childDirectory, page, actionClass);
                 pageInstance.setActionBean(pageAction);
                 configurePageAction(pageAction, pageInstance);
+                subpageCache.put(childDirectory,
+                        new SubpageCacheEntry(page, actionClass, pageInstance.getConfiguration()));
                 return pageAction;
             } catch (Exception e) {
                 throw new PageNotActiveException(e);
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2005-2017 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.dispatcher;
+
+import com.manydesigns.elements.ElementsThreadLocals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the pages directory and its subdirectories, and updates the caches in {@link DispatcherLogic} as soon as
+ * a file changes, on a background thread. Changed pages and configurations are reloaded; any change clears the
+ * resolved subpages.<br>
+ * Note that, depending on the platform, the watch service may not see changes made by other hosts to a shared
+ * (e.g. NFS) directory; in that case, polling should stay enabled.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class PagesWatcher implements Runnable {
+    public static final String copyright =
+            "Copyright (C) 2005-2017 ManyDesigns srl";
+
+    protected final Path pagesDirectory;
+    protected final ServletContext servletContext;
+    protected final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+    protected WatchService watchService;
+    protected Thread thread;
+
+    public static final Logger logger = LoggerFactory.getLogger(PagesWatcher.class);
+
+    public PagesWatcher(File pagesDirectory, ServletContext servletContext) {
+        this.pagesDirectory = pagesDirectory.toPath();
+        this.servletContext = servletContext;
+    }
+
+    public synchronized void start() throws IOException {
+        watchService = pagesDirectory.getFileSystem().newWatchService();
+        registerAll(pagesDirectory);
+        thread = new Thread(this, "portofino-pages-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {} directories under {}", directories.size(), pagesDirectory);
+    }
+
+    public synchronized void stop() {
+        if(thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the watch service", e);
+        }
+        thread = null;
+    }
+
+    public void run() {
+        ElementsThreadLocals.setupDefaultElementsContext();
+        ElementsThreadLocals.setServletContext(servletContext);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                try {
+                    processEvents(key);
+                } catch (Exception e) {
+                    logger.error("Error processing changes, clearing caches", e);
+                    DispatcherLogic.clearCaches();
+                }
+            }
+        } finally {
+            ElementsThreadLocals.removeElementsContext();
+        }
+        logger.info("Stopped watching {}", pagesDirectory);
+    }
+
+    protected void processEvents(WatchKey key) throws IOException {
+        Path directory;
+        synchronized (directories) {
+            directory = directories.get(key);
+        }
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.kind() == OVERFLOW || directory == null) {
+                logger.debug("Events lost, clearing caches");
+                DispatcherLogic.clearCaches();
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            logger.debug("{}: {}", event.kind(), path);
+            if(event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                registerAll(path);
+            }
+            DispatcherLogic.fileChanged(path.toFile());
+        }
+        if(!key.reset()) {
+            synchronized (directories) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    protected void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                synchronized (directories) {
+                    directories.put(key, dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -20,17 +20,21 @@
 
 package com.manydesigns.portofino.logic;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.portofino.dispatcher.Dispatch;
 import com.manydesigns.portofino.dispatcher.PageInstance;
 import com.manydesigns.portofino.modules.BaseModule;
+import com.manydesigns.portofino.navigation.Navigation;
 import com.manydesigns.portofino.pages.Page;
 import com.manydesigns.portofino.pages.Permissions;
 import com.manydesigns.portofino.security.AccessLevel;
 import com.manydesigns.portofino.security.RequiresAdministrator;
 import com.manydesigns.portofino.security.RequiresPermissions;
-import com.manydesigns.portofino.shiro.GroupPermission;
-import com.manydesigns.portofino.shiro.PagePermission;
+import com.manydesigns.portofino.shiro.*;
 import net.sourceforge.stripes.action.ActionBean;
 import org.apache.commons.configuration.Configuration;
 import org.apache.shiro.SecurityUtils;
@@ -43,10 +47,7 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -73,6 +74,33 @@ public class SecurityLogic {
 
     public static final Logger logger = LoggerFactory.getLogger(SecurityLogic.class);
 
+    //**************************************************************************
+    // Permission caches
+    //**************************************************************************
+
+    /**
+     * Effective permissions, keyed by the list of pages from the root to the target page. Pages are compared by
+     * identity, so a page that is reloaded from disk gets a new entry.
+     */
+    protected static final Cache<List<Page>, Permissions> actualPermissionsCache =
+            CacheBuilder.newBuilder().maximumSize(10000).build();
+
+    /**
+     * Access decisions, keyed by list of pages, sorted groups, access level and permissions.
+     */
+    protected static final Cache<List<Object>, Boolean> accessDecisionCache =
+            CacheBuilder.newBuilder().maximumSize(50000).build();
+
+    /**
+     * Empties the permission caches and the navigation cache, which depends on them. Called when pages are saved
+     * or changed and when the realm is reloaded.
+     */
+    public static void clearPermissionsCache() {
+        actualPermissionsCache.invalidateAll();
+        accessDecisionCache.invalidateAll();
+        Navigation.clearCache();
+    }
+
     public static boolean hasPermissions(Configuration conf, Dispatch dispatch, Subject subject, Method handler) {
         logger.debug("Checking action permissions");
         return hasPermissions(conf, dispatch.getLastPageInstance(), subject, handler);
@@ -92,18 +120,89 @@ public class SecurityLogic {
 
     public static boolean hasPermissions
             (Configuration conf, PageInstance instance, Subject subject, AccessLevel accessLevel, String... permissions) {
-        Permissions configuration = calculateActualPermissions(instance);
-        return hasPermissions(conf, configuration, subject, accessLevel, permissions);
+        return hasPermissions(conf, getPages(instance), subject, accessLevel, permissions);
     }
 
-    public static Permissions calculateActualPermissions(PageInstance instance) {
+    /**
+     * Checks the permissions of the subject on the last of the given pages. The effective permissions and, when
+     * the realm allows it (see {@link AbstractPortofinoRealm#getPageAccessGroups(PrincipalCollection)}), the
+     * decision itself are cached.
+     * @param pages the pages from the root to the target page.
+     */
+    public static boolean hasPermissions
+            (Configuration conf, List<Page> pages, Subject subject, AccessLevel level, String... permissions) {
+        pages = ImmutableList.copyOf(pages);
+        Permissions configuration = getActualPermissions(pages);
+        Collection<String> groups = getAccessGroups(conf, subject);
+        if(groups == null) {
+            return hasPermissions(conf, configuration, subject, level, permissions);
+        }
+        if(groups.contains(getAdministratorsGroup(conf))) {
+            return true;
+        }
+        List<Object> key = Arrays.<Object>asList(pages, groups, level, Arrays.asList(permissions));
+        Boolean result = accessDecisionCache.getIfPresent(key);
+        if(result == null) {
+            result = GroupPermission.hasPermissions(configuration, groups, level, permissions);
+            accessDecisionCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sorted groups that determine the subject's access to pages, or null if access does not depend
+     * only on groups. Subjects with the same groups share cached access decisions.
+     */
+    public static Collection<String> getAccessGroups(Configuration conf, Subject subject) {
+        if(subject.getPrincipal() != null) {
+            return getPageAccessGroups(subject.getPrincipals());
+        } else {
+            return ImmutableSortedSet.of(getAllGroup(conf), getAnonymousGroup(conf));
+        }
+    }
+
+    protected static Collection<String> getPageAccessGroups(PrincipalCollection principals) {
+        PortofinoRealm realm = ShiroUtils.getPortofinoRealm();
+        Set<String> groups;
+        if(realm instanceof SecurityGroovyRealm) {
+            groups = ((SecurityGroovyRealm) realm).getPageAccessGroups(principals);
+        } else if(realm instanceof AbstractPortofinoRealm) {
+            groups = ((AbstractPortofinoRealm) realm).getPageAccessGroups(principals);
+        } else {
+            groups = null;
+        }
+        return groups != null ? ImmutableSortedSet.copyOf(groups) : null;
+    }
+
+    protected static List<Page> getPages(PageInstance instance) {
         List<Page> pages = new ArrayList<Page>();
         while (instance != null) {
             pages.add(0, instance.getPage());
             instance = instance.getParent();
         }
+        return pages;
+    }
+
+    /**
+     * Computes the effective permissions of a page. The result may be shared and must not be modified.
+     */
+    public static Permissions calculateActualPermissions(PageInstance instance) {
+        return getActualPermissions(getPages(instance));
+    }
 
-        return calculateActualPermissions(new Permissions(), pages);
+    /**
+     * Returns the effective permissions of the last of the given pages, possibly from the cache.
+     * The result may be shared and must not be modified.
+     * @param pages the pages from the root to the target page.
+     */
+    public static Permissions getActualPermissions(List<Page> pages) {
+        pages = ImmutableList.copyOf(pages);
+        Permissions permissions = actualPermissionsCache.getIfPresent(pages);
+        if(permissions == null) {
+            permissions = calculateActualPermissions(new Permissions(), pages);
+            actualPermissionsCache.put(pages, permissions);
+        }
+        return permissions;
     }
 
     public static Permissions calculateActualPermissions(Permissions basePermissions, List<Page> pages) {
@@ -304,9 +403,8 @@ public class SecurityLogic {
         RequiresPermissions requiresPermissions =
                     SecurityLogic.getRequiresPermissionsAnnotation(method, fallbackClass);
         if(requiresPermissions != null) {
-            Permissions permissions = SecurityLogic.calculateActualPermissions(pageInstance);
-            return SecurityLogic.hasPermissions
-                    (conf, permissions, subject, requiresPermissions);
+            return hasPermissions
+                    (conf, pageInstance, subject, requiresPermissions.level(), requiresPermissions.permissions());
         } else {
             return true;
         }
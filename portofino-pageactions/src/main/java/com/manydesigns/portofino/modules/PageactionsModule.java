@@ -20,6 +20,7 @@
 
 package com.manydesigns.portofino.modules;
 
+import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.util.ElementsFileUtils;
 import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.cache.CacheResetEvent;
@@ -27,6 +28,8 @@ import com.manydesigns.portofino.cache.CacheResetListener;
 import com.manydesigns.portofino.cache.CacheResetListenerRegistry;
 import com.manydesigns.portofino.di.Inject;
 import com.manydesigns.portofino.dispatcher.DispatcherLogic;
+import com.manydesigns.portofino.dispatcher.PagesWatcher;
+import com.manydesigns.portofino.navigation.Navigation;
 import com.manydesigns.portofino.pageactions.activitystream.ActivityStreamAction;
 import com.manydesigns.portofino.pageactions.custom.CustomAction;
 import com.manydesigns.portofino.pageactions.form.FormAction;
@@ -48,6 +51,14 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletContext;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -84,6 +95,7 @@ public class PageactionsModule implements Module {
     protected EnvironmentLoader environmentLoader = new EnvironmentLoader();
 
     protected CacheManager cacheManager;
+    protected PagesWatcher pagesWatcher;
 
     protected ModuleStatus status = ModuleStatus.CREATED;
 
@@ -139,6 +151,7 @@ public class PageactionsModule implements Module {
     public void init() {
         logger.debug("Initializing dispatcher");
         DispatcherLogic.init(configuration);
+        Navigation.init(configuration);
 
         logger.info("Initializing ehcache service");
         cacheManager = CacheManager.newInstance();
@@ -148,16 +161,27 @@ public class PageactionsModule implements Module {
         logger.info("Pages directory: " + pagesDirectory);
         ElementsFileUtils.ensureDirectoryExistsAndWarnIfNotWritable(pagesDirectory);
 
-        if(configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_PAGES, false)) {
-            logger.info("Preloading pages");
-            preloadPageActions(pagesDirectory);
-        }
+        //Shared classes first, since pages depend on them
         if(configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_CLASSES, false)) {
             logger.info("Preloading Groovy classes");
             preloadGroovyClasses(groovyClasspath);
         }
+        if(configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_PAGES, false)) {
+            logger.info("Preloading pages");
+            preloadPageActions(pagesDirectory);
+        }
         servletContext.setAttribute(PAGES_DIRECTORY, pagesDirectory);
 
+        if(configuration.getBoolean(DispatcherLogic.PAGE_CACHE_WATCH, false)) {
+            pagesWatcher = new PagesWatcher(pagesDirectory, servletContext);
+            try {
+                pagesWatcher.start();
+            } catch (IOException e) {
+                logger.error("Could not watch the pages directory, relying on polling", e);
+                pagesWatcher = null;
+            }
+        }
+
         logger.debug("Creating pageactions registry");
         PageActionRegistry pageActionRegistry = new PageActionRegistry();
         pageActionRegistry.register(ActivityStreamAction.class);
@@ -175,24 +199,49 @@ public class PageactionsModule implements Module {
     }
 
     protected void preloadPageActions(File directory) {
+        List<File> pageDirectories = new ArrayList<File>();
+        collectPageDirectories(directory, pageDirectories);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for(final File pageDirectory : pageDirectories) {
+            tasks.add(Executors.callable(new Runnable() {
+                public void run() {
+                    logger.debug("Preloading page: {}", pageDirectory);
+                    try {
+                        Class<?> clazz = DispatcherLogic.getActionClass(configuration, pageDirectory);
+                        clazz.newInstance();
+                    } catch(Throwable t) {
+                        logger.warn("PageAction preload failed for page " + pageDirectory.getAbsolutePath(), t);
+                    }
+                }
+            }));
+        }
+        //Page actions are independent of each other, but they depend on the shared classes: they can only be
+        //compiled in parallel if those have already been compiled, otherwise two pages could compile the same class
+        int threads = 1;
+        if(configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_CLASSES, false)) {
+            threads = configuration.getInt(
+                    PortofinoProperties.GROOVY_PRELOAD_THREADS, Runtime.getRuntime().availableProcessors());
+        }
+        preload(tasks, threads);
+    }
+
+    protected void collectPageDirectories(File directory, List<File> pageDirectories) {
         for(File file : directory.listFiles()) {
             logger.debug("visit {}", file);
             if(file.isDirectory()) {
                 if(!file.equals(directory) && !file.equals(directory.getParentFile())) {
-                    preloadPageActions(file);
+                    collectPageDirectories(file, pageDirectories);
                 }
             } else if("action.groovy".equals(file.getName())) {
-                logger.debug("Preloading page: {}", file);
-                try {
-                    Class<?> clazz = DispatcherLogic.getActionClass(configuration, directory);
-                    clazz.newInstance();
-                } catch(Throwable t) {
-                    logger.warn("PageAction preload failed for page " + file.getAbsolutePath(), t);
-                }
+                pageDirectories.add(directory);
             }
         }
     }
 
+    /**
+     * Compiles the shared Groovy classes one at a time. Compiling in parallel through the shared script engine could
+     * define the same class twice when two scripts depend on it.
+     */
     protected void preloadGroovyClasses(File directory) {
         for(File file : directory.listFiles()) {
             logger.debug("visit {}", file);
@@ -212,6 +261,47 @@ public class PageactionsModule implements Module {
         }
     }
 
+    /**
+     * Runs preload tasks in parallel and waits for them to complete. Each thread has its own Elements context,
+     * bound to the servlet context.
+     */
+    protected void preload(List<Callable<Object>> tasks, int threads) {
+        if(tasks.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        threads = Math.max(1, Math.min(threads, tasks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            protected final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        ElementsThreadLocals.setupDefaultElementsContext();
+                        ElementsThreadLocals.setServletContext(servletContext);
+                        try {
+                            runnable.run();
+                        } finally {
+                            ElementsThreadLocals.removeElementsContext();
+                        }
+                    }
+                }, "portofino-groovy-preload-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            logger.warn("Preload interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Preloaded {} scripts with {} threads in {} ms",
+                new Object[] { tasks.size(), threads, System.currentTimeMillis() - start });
+    }
+
     @Override
     public void start() {
         logger.info("Initializing Shiro environment");
@@ -221,7 +311,10 @@ public class PageactionsModule implements Module {
         try {
             String securityGroovy = new File(groovyClasspath, "Security.groovy").toURI().toString();
             logger.debug("Security.groovy URL: {}", securityGroovy);
-            SecurityGroovyRealm realm = new SecurityGroovyRealm(groovyScriptEngine, securityGroovy, servletContext);
+            long checkInterval = configuration.getBoolean(PortofinoProperties.GROOVY_RECOMPILE, true) ?
+                    configuration.getLong(PortofinoProperties.GROOVY_SECURITY_CHECK_INTERVAL, 1000) : -1;
+            SecurityGroovyRealm realm =
+                    new SecurityGroovyRealm(groovyScriptEngine, securityGroovy, servletContext, checkInterval);
             LifecycleUtils.init(realm);
             rsm.setRealm(realm);
             status = ModuleStatus.STARTED;
@@ -245,6 +338,9 @@ public class PageactionsModule implements Module {
         environmentLoader.destroyEnvironment(servletContext);
         logger.info("Shutting down cache...");
         cacheManager.shutdown();
+        if(pagesWatcher != null) {
+            pagesWatcher.stop();
+        }
         status = ModuleStatus.DESTROYED;
     }
 
@@ -20,6 +20,8 @@
 
 package com.manydesigns.portofino.navigation;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.manydesigns.portofino.dispatcher.Dispatch;
 import com.manydesigns.portofino.dispatcher.DispatcherLogic;
 import com.manydesigns.portofino.dispatcher.PageInstance;
@@ -32,9 +34,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -59,6 +60,46 @@ public class Navigation {
     public static final Logger logger =
             LoggerFactory.getLogger(Navigation.class);
 
+    //**************************************************************************
+    // Cache
+    //**************************************************************************
+
+    public static final String NAVIGATION_CACHE_SIZE = "navigation.cache.size";
+    public static final String NAVIGATION_CACHE_CHECK_FREQUENCY = "navigation.cache.check.frequency";
+
+    /**
+     * Visible children of a page, keyed by the directory of the children and the groups of the subject (null if
+     * permissions are not checked). Items that depend on the current request - selection, parameters, titles of
+     * page instances - are not cached. Entries are evicted when pages or permissions change, and expire after the
+     * check frequency to pick up changes made outside the application.
+     */
+    protected static Cache<List<Object>, List<VisibleChild>> cache =
+            CacheBuilder.newBuilder().maximumSize(0).build();
+
+    protected static class VisibleChild {
+        public final ChildPage childPage;
+        public final Page page;
+
+        public VisibleChild(ChildPage childPage, Page page) {
+            this.childPage = childPage;
+            this.page = page;
+        }
+    }
+
+    public static void init(Configuration portofinoConfiguration) {
+        int maxSize = portofinoConfiguration.getInt(NAVIGATION_CACHE_SIZE, 1000);
+        int refreshCheckFrequency = portofinoConfiguration.getInt(NAVIGATION_CACHE_CHECK_FREQUENCY, 5);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize);
+        if(refreshCheckFrequency > 0) {
+            builder.expireAfterWrite(refreshCheckFrequency, TimeUnit.SECONDS);
+        }
+        cache = builder.build();
+    }
+
+    public static void clearCache() {
+        cache.invalidateAll();
+    }
+
     //**************************************************************************
     // Constructors
     //**************************************************************************
@@ -91,13 +132,12 @@ public class Navigation {
         rootNavigationItem = new NavigationItem(
                 rootPageInstance.getTitle(), rootPageInstance.getDescription(), prefix,
                 null, true, rootSelected, rootGhost);
+        Collection<String> groups = skipPermissions ? null : SecurityLogic.getAccessGroups(configuration, subject);
         LinkedList<Page> pages = new LinkedList<Page>();
         PageInstance[] allInstances = dispatch.getPageInstancePath();
         for(int i = 0; i <= rootPageIndex; i++) {
             pages.add(allInstances[i].getPage());
         }
-        Permissions basePermissions = SecurityLogic.calculateActualPermissions(new Permissions(), pages);
-        pages.clear();
         List<ChildPage> childPages;
         NavigationItem currentNavigationItem = rootNavigationItem;
         for (int i = 0, pageInstancesLength = pageInstances.length; i < pageInstancesLength; i++) {
@@ -113,7 +153,7 @@ public class Navigation {
             if (layout != null) {
                 childPages = layout.getChildPages();
             } else {
-                childPages = new ArrayList<ChildPage>();
+                childPages = Collections.emptyList();
             }
 
             List<NavigationItem> currentChildNavigationItems =
@@ -123,16 +163,9 @@ public class Navigation {
                 prefix += param + "/";
             }
             currentNavigationItem = null;
-            for (ChildPage childPage : childPages) {
-                File pageDir = current.getChildPageDirectory(childPage.getName());
-                Page page;
-                try {
-                    page = DispatcherLogic.getPage(pageDir);
-                } catch (Exception e) {
-                    logger.warn("Nonexisting child page: " + pageDir);
-                    logger.debug("Detailed explanation", e);
-                    continue;
-                }
+            for (VisibleChild visibleChild : getVisibleChildren(current, childPages, pages, groups)) {
+                ChildPage childPage = visibleChild.childPage;
+                Page page = visibleChild.page;
                 String path = prefix + childPage.getName();
                 boolean inPath = false;
                 boolean selected = false;
@@ -146,15 +179,6 @@ public class Navigation {
                         parameters = next.getParameters();
                     }
                 }
-                pages.add(page);
-                if (!skipPermissions) {
-                    Permissions permissions = SecurityLogic.calculateActualPermissions(basePermissions, pages);
-                    if(!SecurityLogic.hasPermissions(configuration, permissions, subject, AccessLevel.VIEW)) {
-                        pages.removeLast();
-                        continue;
-                    }
-                }
-                pages.removeLast();
                 if(!childPage.isShowInNavigation() && !inPath) {
                     continue;
                 }
@@ -180,6 +204,50 @@ public class Navigation {
         }
     }
 
+    /**
+     * Returns the child pages of a page instance that the subject is allowed to view, possibly from the cache.
+     * @param pageInstance the page instance.
+     * @param childPages the children of the page instance, from its layout.
+     * @param pages the pages from the root to the page instance.
+     * @param groups the groups of the subject, or null if they don't determine access.
+     */
+    protected List<VisibleChild> getVisibleChildren(
+            PageInstance pageInstance, List<ChildPage> childPages, LinkedList<Page> pages, Collection<String> groups) {
+        List<Object> key = null;
+        if(skipPermissions || groups != null) {
+            key = Arrays.<Object>asList(pageInstance.getChildrenDirectory(), groups);
+            List<VisibleChild> children = cache.getIfPresent(key);
+            if(children != null) {
+                return children;
+            }
+        }
+        List<VisibleChild> children = new ArrayList<VisibleChild>();
+        for (ChildPage childPage : childPages) {
+            File pageDir = pageInstance.getChildPageDirectory(childPage.getName());
+            Page page;
+            try {
+                page = DispatcherLogic.getPage(pageDir);
+            } catch (Exception e) {
+                logger.warn("Nonexisting child page: " + pageDir);
+                logger.debug("Detailed explanation", e);
+                continue;
+            }
+            if (!skipPermissions) {
+                pages.add(page);
+                boolean visible = SecurityLogic.hasPermissions(configuration, pages, subject, AccessLevel.VIEW);
+                pages.removeLast();
+                if(!visible) {
+                    continue;
+                }
+            }
+            children.add(new VisibleChild(childPage, page));
+        }
+        if(key != null) {
+            cache.put(key, Collections.unmodifiableList(children));
+        }
+        return children;
+    }
+
     protected boolean isSelected(PageInstance pageInstance) {
         return pageInstance == dispatch.getLastPageInstance();
     }
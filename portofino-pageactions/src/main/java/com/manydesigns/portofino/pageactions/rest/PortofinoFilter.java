@@ -26,7 +26,9 @@ import com.manydesigns.portofino.buttons.ButtonsLogic;
 import com.manydesigns.portofino.dispatcher.Dispatch;
 import com.manydesigns.portofino.dispatcher.PageAction;
 import com.manydesigns.portofino.dispatcher.PageInstance;
+import com.manydesigns.portofino.interceptors.ReadOnlyInterceptor;
 import com.manydesigns.portofino.logic.SecurityLogic;
+import com.manydesigns.portofino.persistence.ReadOnly;
 import com.manydesigns.portofino.shiro.ShiroUtils;
 import net.sourceforge.stripes.action.ActionBean;
 import net.sourceforge.stripes.action.Resolution;
@@ -98,6 +100,7 @@ public class PortofinoFilter implements ContainerRequestFilter, ContainerRespons
         }
 
         fillMDC();
+        markReadOnly(resource);
         checkAuthorizations(requestContext, resource);
         preparePage(requestContext, resource);
         runStripesInterceptors(requestContext, resource, true);
@@ -144,6 +147,13 @@ public class PortofinoFilter implements ContainerRequestFilter, ContainerRespons
         }
     }
 
+    protected void markReadOnly(Object resource) {
+        Method handler = resourceInfo.getResourceMethod();
+        if(handler != null && ReadOnlyInterceptor.isReadOnly(handler, resource.getClass())) {
+            ElementsThreadLocals.getHttpServletRequest().setAttribute(ReadOnly.REQUEST_ATTRIBUTE, true);
+        }
+    }
+
     protected void preparePage(ContainerRequestContext requestContext, Object resource) {
         if(resource instanceof PageAction) {
             PageAction pageAction = (PageAction) resource;
@@ -38,6 +38,7 @@ import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
 
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.util.*;
 
 /**
@@ -57,6 +58,16 @@ public abstract class AbstractPortofinoRealm extends AuthorizingRealm implements
 
     protected PasswordService passwordService;
 
+    /**
+     * Names of the AuthorizingRealm methods that decide access. If a subclass overrides any of them, access
+     * decisions cannot be computed from the groups alone.
+     */
+    protected static final Set<String> AUTHORIZATION_CHECK_METHODS = new HashSet<String>(Arrays.asList(
+            "isPermitted", "isPermittedAll", "checkPermission", "checkPermissions",
+            "hasRole", "hasRoles", "hasAllRoles", "checkRole", "checkRoles"));
+
+    protected Boolean authorizationChecksOverridden;
+
     protected AbstractPortofinoRealm() {
         //Legacy - let the actual implementation handle hashing
         setup(new PlaintextHashService(), new PlaintextHashFormat());
@@ -95,6 +106,50 @@ public abstract class AbstractPortofinoRealm extends AuthorizingRealm implements
         return info;
     }
 
+    /**
+     * Returns the groups that determine access to pages for the given principals, if access depends only on them,
+     * as it does with the authorization info built by {@link #doGetAuthorizationInfo(PrincipalCollection)}.
+     * In that case, access decisions can be shared among all users belonging to the same groups.
+     * @param principals the principals.
+     * @return the groups, or null if the authorization info contains other object permissions, or if this realm
+     * overrides the authorization checks (e.g. isPermitted or hasRole).
+     */
+    public Set<String> getPageAccessGroups(PrincipalCollection principals) {
+        if(isAuthorizationChecksOverridden()) {
+            return null;
+        }
+        AuthorizationInfo info = getAuthorizationInfo(principals);
+        if(info == null || info.getObjectPermissions() == null || info.getObjectPermissions().size() != 1) {
+            return null;
+        }
+        Permission permission = info.getObjectPermissions().iterator().next();
+        if(permission instanceof GroupPermission) {
+            return new HashSet<String>(((GroupPermission) permission).getGroups());
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether a subclass overrides any of the {@link #AUTHORIZATION_CHECK_METHODS}, e.g. a Security.groovy
+     * that customizes isPermitted while keeping the default authorization info.
+     */
+    protected boolean isAuthorizationChecksOverridden() {
+        if(authorizationChecksOverridden == null) {
+            boolean overridden = false;
+            for(Class<?> c = getClass(); c != AbstractPortofinoRealm.class && !overridden; c = c.getSuperclass()) {
+                for(Method method : c.getDeclaredMethods()) {
+                    if(AUTHORIZATION_CHECK_METHODS.contains(method.getName()) && !method.isSynthetic()) {
+                        overridden = true;
+                        break;
+                    }
+                }
+            }
+            authorizationChecksOverridden = overridden;
+        }
+        return authorizationChecksOverridden;
+    }
+
     /**
      * Loads the groups associated to a given user.
      * @param principal the user object.
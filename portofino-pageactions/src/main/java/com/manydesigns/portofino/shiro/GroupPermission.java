@@ -50,6 +50,10 @@ public class GroupPermission implements Permission {
         this.groups = groups;
     }
 
+    public Collection<String> getGroups() {
+        return groups;
+    }
+
     public boolean implies(Permission p) {
         if(p instanceof GroupPermission) {
             GroupPermission gp = (GroupPermission) p;
@@ -22,6 +22,7 @@ package com.manydesigns.portofino.shiro;
 
 import com.manydesigns.elements.reflection.ClassAccessor;
 import com.manydesigns.portofino.di.Injections;
+import com.manydesigns.portofino.logic.SecurityLogic;
 import groovy.util.GroovyScriptEngine;
 import groovy.util.ResourceException;
 import groovy.util.ScriptException;
@@ -40,6 +41,7 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.ServletContext;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Realm implementation that delegates to another class, written in Groovy and dynamically reloaded.
@@ -68,6 +70,9 @@ public class SecurityGroovyRealm implements PortofinoRealm, Destroyable {
     protected final ServletContext servletContext;
     protected volatile PortofinoRealm security;
     protected volatile boolean destroyed = false;
+    protected final long checkInterval;
+    protected volatile long nextCheck;
+    private final ReentrantLock refreshLock = new ReentrantLock();
 
     protected CacheManager cacheManager;
 
@@ -77,24 +82,51 @@ public class SecurityGroovyRealm implements PortofinoRealm, Destroyable {
 
     public SecurityGroovyRealm(GroovyScriptEngine groovyScriptEngine, String scriptUrl, ServletContext servletContext)
             throws ScriptException, ResourceException, InstantiationException, IllegalAccessException {
+        this(groovyScriptEngine, scriptUrl, servletContext, 0);
+    }
+
+    /**
+     * @param checkInterval the minimum number of milliseconds between two checks for changes to the script.
+     *                      If negative, the script is loaded only once.
+     */
+    public SecurityGroovyRealm(
+            GroovyScriptEngine groovyScriptEngine, String scriptUrl, ServletContext servletContext, long checkInterval)
+            throws ScriptException, ResourceException, InstantiationException, IllegalAccessException {
         this.groovyScriptEngine = groovyScriptEngine;
         this.scriptUrl = scriptUrl;
         this.servletContext = servletContext;
+        this.checkInterval = checkInterval;
         doEnsureDelegate();
+        nextCheck = System.currentTimeMillis() + checkInterval;
     }
 
     //--------------------------------------------------------------------------
     // Delegation support
     //--------------------------------------------------------------------------
 
-    private synchronized PortofinoRealm ensureDelegate() {
+    /**
+     * Returns the current delegate without locking. At most once every {@link #checkInterval} milliseconds, a
+     * single thread checks the script for changes and possibly replaces the delegate; other threads keep using the
+     * current one in the meantime.
+     */
+    private PortofinoRealm ensureDelegate() {
         if(destroyed) {
             throw new IllegalStateException("This realm has been destroyed.");
         }
+        PortofinoRealm current = security;
+        if(checkInterval < 0 || System.currentTimeMillis() < nextCheck || !refreshLock.tryLock()) {
+            return current;
+        }
         try {
+            if(System.currentTimeMillis() < nextCheck) { //Another thread has just checked
+                return security;
+            }
             return doEnsureDelegate();
         } catch (Exception e) {
             throw new Error("Security.groovy not found or not loadable", e);
+        } finally {
+            nextCheck = System.currentTimeMillis() + checkInterval;
+            refreshLock.unlock();
         }
     }
 
@@ -114,6 +146,7 @@ public class SecurityGroovyRealm implements PortofinoRealm, Destroyable {
                 configureDelegate(realm);
                 PortofinoRealm oldSecurity = security;
                 security = realm;
+                SecurityLogic.clearPermissionsCache();
                 LifecycleUtils.destroy(oldSecurity);
                 return realm;
             } else {
@@ -198,6 +231,18 @@ public class SecurityGroovyRealm implements PortofinoRealm, Destroyable {
         return ensureDelegate().getGroups();
     }
 
+    /**
+     * @see AbstractPortofinoRealm#getPageAccessGroups(PrincipalCollection)
+     */
+    public Set<String> getPageAccessGroups(PrincipalCollection principals) {
+        PortofinoRealm delegate = ensureDelegate();
+        if(delegate instanceof AbstractPortofinoRealm) {
+            return ((AbstractPortofinoRealm) delegate).getPageAccessGroups(principals);
+        } else {
+            return null;
+        }
+    }
+
     //--------------------------------------------------------------------------
     // Realm implementation
     //--------------------------------------------------------------------------
@@ -22,11 +22,13 @@ package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.Column;
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import com.manydesigns.portofino.persistence.hibernate.ColumnParameterType;
 import org.hibernate.dialect.PostgreSQL82Dialect;
 import org.hibernate.usertype.DynamicParameterizedType;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -101,4 +103,22 @@ public class PostgreSQLDatabasePlatform extends AbstractDatabasePlatform {
         }
         return schemaNames;
     }
+
+    @Override
+    public Long getEstimatedRowCount(Connection connection, Table table) throws SQLException {
+        //reltuples is -1 (or 0 in older versions) if the table has never been analyzed
+        return queryLong(connection,
+                "select c.reltuples::bigint from pg_class c join pg_namespace n on n.oid = c.relnamespace " +
+                "where n.nspname = ? and c.relname = ?",
+                table.getSchemaName(), table.getTableName());
+    }
+
+    @Override
+    public Long getReplicationLag(Connection connection) throws SQLException {
+        //pg_last_xact_replay_timestamp is null if nothing has been replayed yet
+        return queryLong(connection,
+                "select case when pg_is_in_recovery() " +
+                "then coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)::bigint " +
+                "else 0 end");
+    }
 }